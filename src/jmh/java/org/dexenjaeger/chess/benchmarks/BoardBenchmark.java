@@ -0,0 +1,93 @@
+package org.dexenjaeger.chess.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.GameStatus;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.board.Board;
+import org.dexenjaeger.chess.models.board.FileType;
+import org.dexenjaeger.chess.models.board.Position;
+import org.dexenjaeger.chess.models.board.RankType;
+import org.dexenjaeger.chess.models.board.Square;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.models.moves.SimpleMove;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+import org.dexenjaeger.chess.services.BoardService;
+import org.dexenjaeger.chess.services.FenService;
+import org.dexenjaeger.chess.services.GameService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BoardBenchmark {
+    @Param({
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/7k/p6p/4B1p1/3P1pQ1/7P/P5PK/5q2 w - - 15 38",
+    })
+    public String fen;
+
+    private BoardService boardService;
+    private GameService gameService;
+    private Game game;
+    private Position position;
+    private Board board;
+    private Side side;
+    private Board startingBoard;
+    private SimpleMove kingPawnOpening;
+
+    @Setup
+    public void setUp() {
+        ServiceProvider serviceProvider = new ServiceProvider();
+        boardService = serviceProvider.getInstance(BoardService.class);
+        gameService = serviceProvider.getInstance(GameService.class);
+        game = serviceProvider.getInstance(FenService.class).getGame(fen);
+        position = gameService.toPosition(game);
+        board = game.getCurrentBoard();
+        side = gameService.currentSide(game);
+        startingBoard = BoardService.standardGameBoard();
+        kingPawnOpening = new SimpleMove(
+            new Square(FileType.E, RankType.TWO), new Square(FileType.E, RankType.FOUR), PieceType.PAWN, Side.WHITE
+        );
+    }
+
+    @Benchmark
+    public Board movePiece() {
+        return startingBoard.movePiece(kingPawnOpening);
+    }
+
+    @Benchmark
+    public boolean isLegal() {
+        return boardService.isLegal(startingBoard, kingPawnOpening);
+    }
+
+    @Benchmark
+    public Set<Move> getMovesBySide() {
+        return boardService.getMovesBySide(board, side);
+    }
+
+    @Benchmark
+    public boolean isSideInCheck() {
+        return boardService.isSideInCheck(board, side);
+    }
+
+    @Benchmark
+    public Set<Move> getAvailableMoves() {
+        return gameService.getAvailableMoves(game);
+    }
+
+    @Benchmark
+    public GameStatus getGameStatus() {
+        return gameService.getGameStatus(position);
+    }
+}
@@ -0,0 +1,70 @@
+package org.dexenjaeger.chess.benchmarks;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.dexenjaeger.chess.config.BindingConfig;
+import org.dexenjaeger.chess.config.BindingHolder;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.analysis.MateSolver;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.game.GameSnapshot;
+import org.dexenjaeger.chess.services.FenService;
+import org.dexenjaeger.chess.services.analysis.AnalysisService;
+import org.dexenjaeger.chess.utils.TreeNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// The mate puzzles from AnalysisServiceTest. Each search takes long enough to be timed one call
+// at a time.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CheckmateBenchmark {
+    @Param({
+        "3qk3/3ppp2/8/8/2B5/2K2Q2/8/8 w - - 15 38|1",
+        "2rb4/2k5/5N2/1Q6/3K4/8/8/8 w - - 13 49|1",
+        "2r1r1k1/5ppp/8/8/4R3/8/5PPP/4R1K1 w - - 15 38|3",
+        "5r2/2R3b1/P4r2/2p2Nkp/2b3pN/6P1/4PP2/6K1 w - - 15 38|3",
+        "8/7k/p6p/4B1p1/3P1pQ1/7P/P5PK/5q2 w - - 15 38|3",
+    })
+    public String puzzle;
+
+    @Param({"EXHAUSTIVE", "PROOF_NUMBER"})
+    public MateSolver solver;
+
+    private FenService fenService;
+    private AnalysisService analysisService;
+    private String fen;
+    private int maxTurns;
+    private Game game;
+
+    @Setup
+    public void setUp() {
+        ServiceProvider serviceProvider = new ServiceProvider(BindingHolder.init(
+            BindingConfig.builder().mateSolver(solver).build()
+        ));
+        fenService = serviceProvider.getInstance(FenService.class);
+        analysisService = serviceProvider.getInstance(AnalysisService.class);
+        String[] parts = puzzle.split("\\|");
+        fen = parts[0];
+        maxTurns = Integer.parseInt(parts[1]);
+    }
+
+    // The search adds lines to the game, so each call gets a fresh one.
+    @Setup(Level.Invocation)
+    public void loadGame() {
+        game = fenService.getGame(fen);
+    }
+
+    @Benchmark
+    public Optional<TreeNode<GameSnapshot>> findForcedCheckmate() {
+        return analysisService.findForcedCheckmate(game, maxTurns);
+    }
+}
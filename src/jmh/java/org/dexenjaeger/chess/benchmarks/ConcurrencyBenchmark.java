@@ -0,0 +1,91 @@
+package org.dexenjaeger.chess.benchmarks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.dexenjaeger.chess.config.BindingConfig;
+import org.dexenjaeger.chess.config.BindingHolder;
+import org.dexenjaeger.chess.config.ExecutorType;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.io.PgnFileReader;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.game.GameSnapshot;
+import org.dexenjaeger.chess.services.FenService;
+import org.dexenjaeger.chess.services.PgnService;
+import org.dexenjaeger.chess.services.ThreadService;
+import org.dexenjaeger.chess.services.analysis.AnalysisService;
+import org.dexenjaeger.chess.utils.TreeNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Many requests submitted to ThreadService at once, as a batch import or a busy server would,
+// with each executor type. Each call submits the whole batch and waits for all of it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConcurrencyBenchmark {
+    @Param({"PLATFORM", "VIRTUAL"})
+    public ExecutorType executorType;
+
+    @Param({"4", "64"})
+    public int requests;
+
+    private ThreadService threadService;
+    private PgnService pgnService;
+    private FenService fenService;
+    private AnalysisService analysisService;
+    private String pgn;
+
+    @Setup
+    public void setUp() {
+        ServiceProvider serviceProvider = new ServiceProvider(BindingHolder.init(
+            BindingConfig.builder().executorType(executorType).build()
+        ));
+        threadService = serviceProvider.getInstance(ThreadService.class);
+        pgnService = serviceProvider.getInstance(PgnService.class);
+        fenService = serviceProvider.getInstance(FenService.class);
+        analysisService = serviceProvider.getInstance(AnalysisService.class);
+        pgn = PgnFileReader.readGame(PgnFileReader.SAMPLE_FISHER_GAME);
+    }
+
+    @TearDown
+    public void tearDown() {
+        threadService.shutdown(Duration.ofSeconds(10));
+    }
+
+    private <T> List<T> submitAll(Callable<T> request) throws ExecutionException, InterruptedException {
+        List<Future<T>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            futures.add(threadService.submit(request));
+        }
+        List<T> results = new ArrayList<>(requests);
+        for (Future<T> future:futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    @Benchmark
+    public List<Game> gameFromPgn() throws ExecutionException, InterruptedException {
+        return submitAll(() -> pgnService.gameFromPgn(pgn));
+    }
+
+    @Benchmark
+    public List<Optional<TreeNode<GameSnapshot>>> findForcedCheckmate() throws ExecutionException, InterruptedException {
+        return submitAll(() -> analysisService.findForcedCheckmate(
+            fenService.getGame("2rb4/2k5/5N2/1Q6/3K4/8/8/8 w - - 13 49"), 1
+        ));
+    }
+}
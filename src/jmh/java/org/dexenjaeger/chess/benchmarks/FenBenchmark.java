@@ -0,0 +1,38 @@
+package org.dexenjaeger.chess.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.services.FenService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FenBenchmark {
+    @Param({
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+    })
+    public String fen;
+
+    private FenService fenService;
+
+    @Setup
+    public void setUp() {
+        fenService = new ServiceProvider().getInstance(FenService.class);
+    }
+
+    @Benchmark
+    public Game getGame() {
+        return fenService.getGame(fen);
+    }
+}
@@ -0,0 +1,116 @@
+package org.dexenjaeger.chess.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.io.PgnFileReader;
+import org.dexenjaeger.chess.models.GameStatus;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.services.LiveGameService;
+import org.dexenjaeger.chess.services.PgnService;
+import org.dexenjaeger.chess.services.ServiceException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+// Live games played from many threads at once. Every game replays the main line of the sample
+// game and starts over when the line ends. With few games the threads keep landing on the same
+// ones, so moves wait for each other or are rejected because another thread played first.
+@State(Scope.Benchmark)
+public class LiveGameBenchmark {
+    private static final int FOOTPRINT_GAMES = 100_000;
+    private static final int FOOTPRINT_PLIES = 40;
+
+    @Param({"16", "65536"})
+    public int games;
+
+    private ServiceProvider serviceProvider;
+    private LiveGameService liveGameService;
+    private Move[] line;
+    private AtomicLongArray ids;
+
+    @Setup
+    public void setUp() {
+        serviceProvider = new ServiceProvider();
+        liveGameService = serviceProvider.getInstance(LiveGameService.class);
+        Game game = serviceProvider.getInstance(PgnService.class)
+            .gameFromPgn(PgnFileReader.readGame(PgnFileReader.SAMPLE_FISHER_GAME))
+            .goToFirstMove();
+        List<Move> moves = new ArrayList<>();
+        while (!game.getAttemptedMoves().isEmpty()) {
+            game.goToNextMainLineMove();
+            moves.add(game.getPreviousMove());
+        }
+        line = moves.toArray(new Move[0]);
+        ids = new AtomicLongArray(games);
+        for (int i = 0; i < games; i++) {
+            ids.set(i, liveGameService.startGame());
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public GameStatus applyMove() {
+        int slot = ThreadLocalRandom.current().nextInt(games);
+        long id = ids.get(slot);
+        try {
+            int ply = liveGameService.getMoveCount(id);
+            if (ply < line.length) {
+                return liveGameService.applyMove(id, line[ply]);
+            }
+            long nextId = liveGameService.startGame();
+            liveGameService.removeGame(ids.compareAndSet(slot, id, nextId) ? id : nextId);
+            return null;
+        } catch (ServiceException e) {
+            // Another thread played this ply first, or replaced the game.
+            return null;
+        }
+    }
+
+    // Reported as an extra result next to the time it took to fill the store. JMH sums events
+    // over the measurement iterations, so divide it by their count.
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long gamesPerGb;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LiveGameService footprint(Footprint footprint) {
+        LiveGameService store = serviceProvider.getInstance(LiveGameService.class);
+        int plies = Math.min(FOOTPRINT_PLIES, line.length);
+        long before = usedMemory();
+        for (int i = 0; i < FOOTPRINT_GAMES; i++) {
+            long id = store.startGame();
+            for (int ply = 0; ply < plies; ply++) {
+                store.applyMove(id, line[ply]);
+            }
+        }
+        long used = Math.max(1, usedMemory() - before);
+        footprint.gamesPerGb = FOOTPRINT_GAMES * (1L << 30) / used;
+        return store;
+    }
+}
@@ -0,0 +1,45 @@
+package org.dexenjaeger.chess.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.io.PgnFileReader;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.services.PgnService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PgnBenchmark {
+    @Param({
+        PgnFileReader.NIMZO,
+        PgnFileReader.KOLMOV,
+        PgnFileReader.QGD_CLASSICAL,
+        PgnFileReader.SAMPLE_FISHER_GAME,
+    })
+    public String pgnFile;
+
+    private PgnService pgnService;
+    private String pgn;
+
+    @Setup
+    public void setUp() {
+        ServiceProvider serviceProvider = new ServiceProvider();
+        pgnService = serviceProvider.getInstance(PgnService.class);
+        pgn = PgnFileReader.SAMPLE_FISHER_GAME.equals(pgnFile)
+            ? PgnFileReader.readGame(pgnFile)
+            : PgnFileReader.readOpening(pgnFile);
+    }
+
+    @Benchmark
+    public Game gameFromPgn() {
+        return pgnService.gameFromPgn(pgn);
+    }
+}
@@ -0,0 +1,61 @@
+package org.dexenjaeger.chess.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.dexenjaeger.chess.config.BindingConfig;
+import org.dexenjaeger.chess.config.BindingHolder;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.analysis.SearchLimits;
+import org.dexenjaeger.chess.models.analysis.SearchMode;
+import org.dexenjaeger.chess.models.analysis.SearchResult;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.services.FenService;
+import org.dexenjaeger.chess.services.analysis.SearchService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Time to reach a fixed depth with Lazy SMP as the thread count grows. One thread is the single
+// threaded search. The scaling only shows with at least as many cores as threads.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchBenchmark {
+    @Param({
+        "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+    })
+    public String fen;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"4"})
+    public int depth;
+
+    private SearchService searchService;
+    private SearchLimits limits;
+    private Game game;
+
+    @Setup
+    public void setUp() {
+        ServiceProvider serviceProvider = new ServiceProvider(BindingHolder.init(
+            BindingConfig.builder()
+                .nThreads(threads)
+                .searchMode(threads == 1 ? SearchMode.SINGLE_THREAD : SearchMode.LAZY_SMP)
+                .build()
+        ));
+        searchService = serviceProvider.getInstance(SearchService.class);
+        game = serviceProvider.getInstance(FenService.class).getGame(fen);
+        limits = SearchLimits.builder().maxDepth(depth).build();
+    }
+
+    @Benchmark
+    public SearchResult search() {
+        return searchService.search(game, limits);
+    }
+}
@@ -3,6 +3,8 @@ package org.dexenjaeger.chess.config;
 import java.math.BigDecimal;
 import lombok.Builder;
 import lombok.Getter;
+import org.dexenjaeger.chess.models.analysis.MateSolver;
+import org.dexenjaeger.chess.models.analysis.SearchMode;
 
 @Getter
 @Builder
@@ -10,7 +12,17 @@ public class BindingConfig {
     @Builder.Default
     private final int nThreads = 10;
     @Builder.Default
+    private final ExecutorType executorType = ExecutorType.PLATFORM;
+    @Builder.Default
     private final BigDecimal piecesWeight = new BigDecimal("1.00");
     @Builder.Default
     private final BigDecimal activityWeight = new BigDecimal("1.00");
+    // Centipawns for each pseudo-legal move in the search evaluation. Mobility is left out of
+    // the evaluation when it is zero.
+    @Builder.Default
+    private final int mobilityWeight = 0;
+    @Builder.Default
+    private final MateSolver mateSolver = MateSolver.EXHAUSTIVE;
+    @Builder.Default
+    private final SearchMode searchMode = SearchMode.SINGLE_THREAD;
 }
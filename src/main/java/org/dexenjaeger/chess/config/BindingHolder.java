@@ -5,6 +5,8 @@ import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Supplier;
+import org.dexenjaeger.chess.models.analysis.MateSolver;
+import org.dexenjaeger.chess.models.analysis.SearchMode;
 import org.dexenjaeger.chess.services.ThreadService;
 
 public class BindingHolder {
@@ -33,9 +35,13 @@ public class BindingHolder {
 
     public static BindingHolder init(BindingConfig config) {
         return new BindingHolder(new HashSet<>())
-            .bind(ThreadService.class, ThreadService.init(config.getNThreads()))
+            .bind(ThreadService.class, ThreadService.init(config.getNThreads(), config.getExecutorType()))
+            .bind(Integer.class, BindingTags.N_THREADS, config.getNThreads())
             .bind(BigDecimal.class, BindingTags.PIECES_WEIGHT, config.getPiecesWeight())
-            .bind(BigDecimal.class, BindingTags.ACTIVITY_WEIGHT, config.getActivityWeight());
+            .bind(BigDecimal.class, BindingTags.ACTIVITY_WEIGHT, config.getActivityWeight())
+            .bind(Integer.class, BindingTags.MOBILITY_WEIGHT, config.getMobilityWeight())
+            .bind(MateSolver.class, config.getMateSolver())
+            .bind(SearchMode.class, config.getSearchMode());
     }
 
     public <T> Optional<T> getBound(Class<T> tClass) {
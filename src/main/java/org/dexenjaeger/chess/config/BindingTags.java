@@ -3,4 +3,6 @@ package org.dexenjaeger.chess.config;
 public interface BindingTags {
     String ACTIVITY_WEIGHT = "ActivityWeight";
     String PIECES_WEIGHT = "PiecesWeight";
+    String N_THREADS = "NThreads";
+    String MOBILITY_WEIGHT = "MobilityWeight";
 }
@@ -0,0 +1,11 @@
+package org.dexenjaeger.chess.config;
+
+// The threads behind ThreadService.run and ThreadService.submit. Searches always run on a
+// work-stealing pool of BindingConfig.nThreads threads, whatever the type.
+public enum ExecutorType {
+    // A fixed pool of nThreads platform threads.
+    PLATFORM,
+    // A new virtual thread for each task, for work that spends most of its time blocked. Virtual
+    // threads need Java 21. On older runtimes each task gets a pooled platform thread instead.
+    VIRTUAL
+}
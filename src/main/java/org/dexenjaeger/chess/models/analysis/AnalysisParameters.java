@@ -11,4 +11,9 @@ public class AnalysisParameters {
     Side startingSide;
     AtomicInteger maxTurns;
     int iterationNumber;
+    TranspositionTable transpositionTable;
+    CancellationToken cancellationToken;
+    // The shallowest ply of a position that a line below was cut at for repeating. A result that
+    // depends on positions before the node doesn't hold when the node is reached another way.
+    AtomicInteger repetitionPly;
 }
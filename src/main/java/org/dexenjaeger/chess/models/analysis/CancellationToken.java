@@ -0,0 +1,64 @@
+package org.dexenjaeger.chess.models.analysis;
+
+import java.time.Duration;
+
+// Lets the caller of an analysis stop it early, either by cancelling the token from another
+// thread or by giving it a deadline. The analysis checks the token as it goes and gives up once
+// it is cancelled, so the threads working on it are free for other work soon after.
+//
+// A child token is cancelled along with its parent, and can also be cancelled on its own. A
+// search hands one to a part of the work it may want to stop without stopping the rest. A child
+// can have a second parent, such as the token that the caller of a search passed in.
+public class CancellationToken {
+    private final CancellationToken parent;
+    private final CancellationToken otherParent;
+    private final boolean hasDeadline;
+    private final long deadline;
+    private volatile boolean cancelled;
+
+    private CancellationToken(
+        CancellationToken parent, CancellationToken otherParent, boolean hasDeadline, long deadline
+    ) {
+        this.parent = parent;
+        this.otherParent = otherParent;
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+    }
+
+    // A token that is only cancelled by calling cancel.
+    public static CancellationToken create() {
+        return new CancellationToken(null, null, false, 0);
+    }
+
+    // A token that is also cancelled once the timeout has passed.
+    public static CancellationToken withTimeout(Duration timeout) {
+        return new CancellationToken(null, null, true, System.nanoTime() + timeout.toNanos());
+    }
+
+    public CancellationToken child() {
+        return new CancellationToken(this, null, false, 0);
+    }
+
+    // A child that is also cancelled along with the other token.
+    public CancellationToken child(CancellationToken otherParent) {
+        return new CancellationToken(this, otherParent, false, 0);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        if (
+            !cancelled
+                && (
+                    hasDeadline && System.nanoTime() - deadline >= 0
+                        || parent != null && parent.isCancelled()
+                        || otherParent != null && otherParent.isCancelled()
+                )
+        ) {
+            cancelled = true;
+        }
+        return cancelled;
+    }
+}
@@ -0,0 +1,11 @@
+package org.dexenjaeger.chess.models.analysis;
+
+// The algorithm behind AnalysisService.findForcedCheckmate.
+public enum MateSolver {
+    // CheckmateService: searches every line up to the turn limit, shortening the limit as
+    // mates are found.
+    EXHAUSTIVE,
+    // ProofNumberService: depth-first proof-number search, which expands the lines that are
+    // closest to a proof or a disproof first.
+    PROOF_NUMBER
+}
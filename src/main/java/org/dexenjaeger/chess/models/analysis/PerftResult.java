@@ -0,0 +1,25 @@
+package org.dexenjaeger.chess.models.analysis;
+
+import java.util.Map;
+import lombok.Value;
+import org.dexenjaeger.chess.models.moves.Move;
+
+@Value
+public class PerftResult {
+    int depth;
+    long nodes;
+    // The node count below each move from the root. This is empty unless a divide was asked for.
+    Map<Move, Long> nodesByMove;
+    long elapsedNanos;
+
+    public long getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1_000_000_000L / elapsedNanos;
+    }
+
+    public String toString() {
+        return String.format(
+            "perft(%d) = %d nodes in %d ms (%d nodes/s)",
+            depth, nodes, elapsedNanos / 1_000_000, getNodesPerSecond()
+        );
+    }
+}
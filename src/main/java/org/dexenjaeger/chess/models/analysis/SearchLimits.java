@@ -0,0 +1,25 @@
+package org.dexenjaeger.chess.models.analysis;
+
+import java.time.Duration;
+import lombok.Builder;
+import lombok.Value;
+
+// Bounds on a SearchService search. The search stops at whichever limit is reached first and
+// answers with the deepest iteration it completed. The first iteration always completes, so
+// there is a move to play however tight the limits are.
+@Value
+@Builder
+public class SearchLimits {
+    // The deepest iteration, in plies.
+    @Builder.Default
+    int maxDepth = 64;
+    @Builder.Default
+    long maxNodes = Long.MAX_VALUE;
+    // No time limit when null.
+    Duration maxTime;
+    // Stops the search like a time limit when cancelled. Not cancellable when null.
+    CancellationToken cancellationToken;
+    // Whether quiescence search also tries quiet moves that give check, at its first ply.
+    @Builder.Default
+    boolean quiescenceChecks = false;
+}
@@ -0,0 +1,11 @@
+package org.dexenjaeger.chess.models.analysis;
+
+// How SearchService uses threads.
+public enum SearchMode {
+    SINGLE_THREAD,
+    // Lazy SMP: BindingConfig.nThreads threads search the same position and share one
+    // transposition table. Half of the helper threads search one ply deeper than the main thread,
+    // so the threads fill the table for each other instead of repeating the same work. The main
+    // thread's result is the answer.
+    LAZY_SMP
+}
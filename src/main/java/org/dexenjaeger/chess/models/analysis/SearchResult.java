@@ -0,0 +1,32 @@
+package org.dexenjaeger.chess.models.analysis;
+
+import java.util.List;
+import java.util.Optional;
+import lombok.Value;
+import org.dexenjaeger.chess.models.moves.Move;
+
+@Value
+public class SearchResult {
+    // The depth of the deepest completed iteration, in plies.
+    int depth;
+    // In hundredths of a pawn from the point of view of the side to move. Mates are scored
+    // from SearchService.MATE_SCORE down, one less for every ply until the mate.
+    int score;
+    // The best line found, starting with the move to play. Empty when there is no legal move.
+    List<Move> principalVariation;
+    // Every node searched, and how many of those were in quiescence search.
+    long nodes;
+    long quiescenceNodes;
+    long elapsedNanos;
+
+    public Optional<Move> getBestMove() {
+        return principalVariation.isEmpty() ? Optional.empty() : Optional.of(principalVariation.get(0));
+    }
+
+    public String toString() {
+        return String.format(
+            "depth %d score %d nodes %d (quiescence %d) in %d ms pv %s",
+            depth, score, nodes, quiescenceNodes, elapsedNanos / 1_000_000, principalVariation
+        );
+    }
+}
@@ -0,0 +1,99 @@
+package org.dexenjaeger.chess.models.analysis;
+
+import java.util.Arrays;
+
+// A fixed size table of search results keyed by Zobrist key, shared by every thread of a search
+// without locks. Each slot holds the data next to the key XORed with the data. When two threads
+// write a slot at once, the halves no longer match and a read treats the slot as a miss instead
+// of returning another position's result.
+//
+// An entry is a long with the best move in bits 0-20 (see EncodedMove), the bound in bits 21-22,
+// a presence bit at 23, so that MISS is never a valid entry, the depth searched in bits 24-31 and
+// the value in bits 32-63. What the value means is up to the search that stores it.
+public class TranspositionTable {
+    public static final long MISS = 0;
+    // The value is exact, at least or at most the true value of the position.
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    private static final int MOVE_MASK = (1 << 21) - 1;
+    private static final int BOUND_SHIFT = 21;
+    private static final int BOUND_MASK = 0x3;
+    private static final long PRESENT = 1L << 23;
+    private static final int DEPTH_SHIFT = 24;
+    public static final int MAX_DEPTH = 0xFF;
+    private static final int VALUE_SHIFT = 32;
+
+    private final long[] checks;
+    private final long[] entries;
+    private final int indexMask;
+
+    // The size is rounded down to a power of two.
+    public TranspositionTable(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException(String.format("The table size must be positive, not %d.", size));
+        }
+        int capacity = Integer.highestOneBit(size);
+        this.checks = new long[capacity];
+        this.entries = new long[capacity];
+        this.indexMask = capacity - 1;
+    }
+
+    public static int getMove(long entry) {
+        return (int) entry & MOVE_MASK;
+    }
+
+    public static int getBound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    public static int getDepth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & MAX_DEPTH;
+    }
+
+    public static int getValue(long entry) {
+        return (int) (entry >>> VALUE_SHIFT);
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    // Returns the entry stored for the key or MISS.
+    public long probe(long key) {
+        int index = (int) key & indexMask;
+        long entry = entries[index];
+        if (entry == MISS || (checks[index] ^ entry) != key) {
+            return MISS;
+        }
+        return entry;
+    }
+
+    // Stores a result unless the slot holds one that was searched deeper. The move may be
+    // EncodedMove.NONE. A depth above MAX_DEPTH is stored as MAX_DEPTH: the position was searched
+    // at least that deep, so the entry is still right for every search that trusts it.
+    public void store(long key, int depth, int value, int bound, int move) {
+        if (depth < 0) {
+            throw new IllegalArgumentException(String.format("The depth %d must not be negative.", depth));
+        }
+        depth = Math.min(depth, MAX_DEPTH);
+        int index = (int) key & indexMask;
+        long existing = entries[index];
+        if (existing != MISS && getDepth(existing) > depth) {
+            return;
+        }
+        long entry = ((long) value << VALUE_SHIFT)
+            | ((long) depth << DEPTH_SHIFT)
+            | PRESENT
+            | ((long) (bound & BOUND_MASK) << BOUND_SHIFT)
+            | (move & MOVE_MASK);
+        entries[index] = entry;
+        checks[index] = key ^ entry;
+    }
+
+    public void clear() {
+        Arrays.fill(entries, MISS);
+        Arrays.fill(checks, 0);
+    }
+}
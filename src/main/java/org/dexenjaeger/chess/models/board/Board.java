@@ -2,15 +2,16 @@ package org.dexenjaeger.chess.models.board;
 
 import static org.dexenjaeger.chess.models.Side.WHITE;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
-import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import org.dexenjaeger.chess.models.Side;
 import org.dexenjaeger.chess.models.moves.Castle;
 import org.dexenjaeger.chess.models.moves.CastleType;
@@ -20,12 +21,118 @@ import org.dexenjaeger.chess.models.moves.SimpleMove;
 import org.dexenjaeger.chess.models.pieces.Piece;
 import org.dexenjaeger.chess.models.pieces.PieceType;
 
-@EqualsAndHashCode
 public class Board {
-    private final Map<Square, Piece> pieces;
+    private static final Side[] SIDES = Side.values();
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+    private static final Piece[] PIECES = new Piece[SIDES.length * PIECE_TYPES.length];
+    // Each pieceIndex gets four bits of the material signature, enough for ten pieces of a type.
+    private static final int COUNT_BITS = 4;
+    private static final long LIGHT_SQUARES = 0x55AA_55AA_55AA_55AAL;
+    // The count fields in the material signature for the kings, the bishops, and a count of one
+    // for each knight and bishop field.
+    private static final long KING_COUNTS;
+    private static final long BISHOP_COUNTS;
+    private static final long SINGLE_MINOR_PIECES;
+
+    static {
+        long kingCounts = 0;
+        long bishopCounts = 0;
+        long singleMinorPieces = 0;
+        for (Side side:SIDES) {
+            for (PieceType type:PIECE_TYPES) {
+                PIECES[pieceIndex(side, type)] = new Piece(side, type);
+            }
+            kingCounts |= 0xFL << countShift(pieceIndex(side, PieceType.KING));
+            bishopCounts |= 0xFL << countShift(pieceIndex(side, PieceType.BISHOP));
+            singleMinorPieces |= (1L << countShift(pieceIndex(side, PieceType.BISHOP)))
+                | (1L << countShift(pieceIndex(side, PieceType.KNIGHT)));
+        }
+        KING_COUNTS = kingCounts;
+        BISHOP_COUNTS = bishopCounts;
+        SINGLE_MINOR_PIECES = singleMinorPieces;
+    }
+
+    private static int countShift(int pieceIndex) {
+        return pieceIndex * COUNT_BITS;
+    }
+
+    static int pieceIndex(Side side, PieceType type) {
+        return side.ordinal() * PIECE_TYPES.length + type.ordinal();
+    }
+
+    static Piece pieceForIndex(int pieceIndex) {
+        return PIECES[pieceIndex];
+    }
+
+    // One bitboard per side and piece type, indexed by pieceIndex. Bit n is set when a piece
+    // of that side and type is on the square with index n (see Square.getIndex).
+    private final long[] pieceBitboards;
+    // The union of the piece bitboards for each side. These are derived from pieceBitboards.
+    private final long[] sideBitboards;
+    // The Zobrist key of the pieces on the board, kept up to date by toggle. It is derived from
+    // pieceBitboards, so it only serves to make equals and hashCode cheap.
+    @Getter
+    private long zobristKey;
+    // The sum of PieceSquareTables values for the pieces on the board, kept up to date by
+    // toggle, so that evaluating the board takes constant time.
+    @Getter
+    private int pieceSquareScore;
+    // The number of pieces of each side and type, COUNT_BITS bits for each pieceIndex, kept up to
+    // date by toggle. Boards with the same pieces, wherever they stand, have the same signature.
+    @Getter
+    private long materialSignature;
 
     public Board(Map<Square, Piece> pieces) {
-        this.pieces = pieces;
+        this(new long[PIECES.length], new long[SIDES.length], 0, 0, 0);
+        for (Entry<Square, Piece> entry:pieces.entrySet()) {
+            toggle(
+                pieceIndex(entry.getValue().getSide(), entry.getValue().getType()),
+                1L << entry.getKey().getIndex()
+            );
+        }
+    }
+
+    private Board(
+        long[] pieceBitboards, long[] sideBitboards, long zobristKey, int pieceSquareScore, long materialSignature
+    ) {
+        this.pieceBitboards = pieceBitboards;
+        this.sideBitboards = sideBitboards;
+        this.zobristKey = zobristKey;
+        this.pieceSquareScore = pieceSquareScore;
+        this.materialSignature = materialSignature;
+    }
+
+    // A board with the given bitboards, indexed by pieceIndex.
+    static Board fromPieceBitboards(long[] pieceBitboards) {
+        Board result = new Board(new long[PIECES.length], new long[SIDES.length], 0, 0, 0);
+        for (int pieceIndex = 0; pieceIndex < PIECES.length; pieceIndex++) {
+            if (pieceBitboards[pieceIndex] != 0) {
+                result.toggle(pieceIndex, pieceBitboards[pieceIndex]);
+            }
+        }
+        return result;
+    }
+
+    Board copy() {
+        return new Board(pieceBitboards.clone(), sideBitboards.clone(), zobristKey, pieceSquareScore, materialSignature);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Board)) {
+            return false;
+        }
+        // Boards with different keys can't be equal, so most comparisons stop at the key.
+        Board otherBoard = (Board) other;
+        return zobristKey == otherBoard.zobristKey && Arrays.equals(pieceBitboards, otherBoard.pieceBitboards);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(zobristKey);
     }
 
     public String toString() {
@@ -55,69 +162,171 @@ public class Board {
         return String.join("/", result);
     }
 
+    public long getBitboard(Side side, PieceType type) {
+        return pieceBitboards[pieceIndex(side, type)];
+    }
+
+    public long getBitboard(Side side) {
+        return sideBitboards[side.ordinal()];
+    }
+
+    public long getOccupied() {
+        return sideBitboards[0] | sideBitboards[1];
+    }
+
+    public int getPieceCount(Side side, PieceType type) {
+        return (int) (materialSignature >>> countShift(pieceIndex(side, type))) & 0xF;
+    }
+
+    // Whether neither side can give mate by any series of legal moves: only the kings are left,
+    // or one knight or bishop besides them, or only bishops that all stand on squares of one
+    // colour. Most boards are ruled out by their material signature alone.
+    public boolean isInsufficientMaterial() {
+        long pieces = materialSignature & ~KING_COUNTS;
+        if (pieces == 0 || (Long.bitCount(pieces) == 1 && (pieces & SINGLE_MINOR_PIECES) != 0)) {
+            return true;
+        }
+        if ((pieces & ~BISHOP_COUNTS) != 0) {
+            return false;
+        }
+        long bishops = pieceBitboards[pieceIndex(Side.WHITE, PieceType.BISHOP)]
+            | pieceBitboards[pieceIndex(Side.BLACK, PieceType.BISHOP)];
+        return (bishops & LIGHT_SQUARES) == 0 || (bishops & ~LIGHT_SQUARES) == 0;
+    }
+
+    // Returns the pieceIndex of the piece on the given square or -1 if the square is empty.
+    int pieceIndexAt(int squareIndex) {
+        long mask = 1L << squareIndex;
+        for (int side = 0; side < SIDES.length; side++) {
+            if ((sideBitboards[side] & mask) == 0) {
+                continue;
+            }
+            for (int index = side * PIECE_TYPES.length; index < (side + 1) * PIECE_TYPES.length; index++) {
+                if ((pieceBitboards[index] & mask) != 0) {
+                    return index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    int requirePieceIndexAt(int squareIndex) {
+        int pieceIndex = pieceIndexAt(squareIndex);
+        if (pieceIndex < 0) {
+            throw new NoSuchElementException(String.format("There is no piece on %s.", Square.fromIndex(squareIndex)));
+        }
+        return pieceIndex;
+    }
+
     public Optional<Piece> getPiece(FileType file, RankType rank) {
         return getPiece(new Square(file, rank));
     }
-    
+
     public Optional<Piece> getPiece(Square square) {
-        return Optional.ofNullable(pieces.get(square));
+        int pieceIndex = pieceIndexAt(square.getIndex());
+        return pieceIndex < 0 ? Optional.empty() : Optional.of(PIECES[pieceIndex]);
     }
 
     public Optional<Side> getOccupyingSide(Square square) {
-        return getPiece(square).map(Piece::getSide);
+        long mask = 1L << square.getIndex();
+        for (Side side:SIDES) {
+            if ((sideBitboards[side.ordinal()] & mask) != 0) {
+                return Optional.of(side);
+            }
+        }
+        return Optional.empty();
     }
 
-    public Board castle(Castle castle) {
-        Map<Square, Piece> newBoardState = new HashMap<>(pieces);
-        Side side = castle.getSide();
-        CastleType castleType = castle.getType();
-        FileType rookFileFrom = castleType.getRookFileFrom();
+    // The in-place operations below are only used on boards that are not shared, either a fresh
+    // copy or the board owned by a Position.
+    void toggle(int pieceIndex, long mask) {
+        long removed = pieceBitboards[pieceIndex] & mask;
+        pieceSquareScore += PieceSquareTables.values(pieceIndex, mask ^ removed)
+            - PieceSquareTables.values(pieceIndex, removed);
+        materialSignature += (long) (Long.bitCount(mask ^ removed) - Long.bitCount(removed)) << countShift(pieceIndex);
+        pieceBitboards[pieceIndex] ^= mask;
+        sideBitboards[pieceIndex / PIECE_TYPES.length] ^= mask;
+        zobristKey ^= Zobrist.pieceSquares(pieceIndex, mask);
+    }
+
+    private void clear(int squareIndex) {
+        int pieceIndex = pieceIndexAt(squareIndex);
+        if (pieceIndex >= 0) {
+            toggle(pieceIndex, 1L << squareIndex);
+        }
+    }
+
+    private void move(int from, int to) {
+        int pieceIndex = requirePieceIndexAt(from);
+        clear(to);
+        toggle(pieceIndex, (1L << from) | (1L << to));
+    }
+
+    // Moves the king and rook for the given castle. Applying the same castle a second time
+    // puts both pieces back.
+    void toggleCastle(Side side, CastleType castleType) {
         RankType rank = side == WHITE ? RankType.ONE : RankType.EIGHT;
-        Piece rook = Optional.ofNullable(newBoardState.remove(new Square(rookFileFrom, rank))).orElseThrow();
-        Piece king = Optional.ofNullable(newBoardState.remove(new Square(FileType.E, rank))).orElseThrow();
+        toggle(
+            pieceIndex(side, PieceType.ROOK),
+            (1L << new Square(castleType.getRookFileFrom(), rank).getIndex())
+                | (1L << new Square(castleType.getRookFileTo(), rank).getIndex())
+        );
+        toggle(
+            pieceIndex(side, PieceType.KING),
+            (1L << new Square(FileType.E, rank).getIndex())
+                | (1L << new Square(castleType.getKingFileTo(), rank).getIndex())
+        );
+    }
+
+    public Board castle(Castle castle) {
+        RankType rank = castle.getSide() == WHITE ? RankType.ONE : RankType.EIGHT;
+        requirePieceIndexAt(new Square(castle.getType().getRookFileFrom(), rank).getIndex());
+        requirePieceIndexAt(new Square(FileType.E, rank).getIndex());
 
-        FileType rookFileTo = castleType.getRookFileTo();
-        FileType kingFileTo = castleType.getKingFileTo();
-        newBoardState.put(new Square(rookFileTo, rank), rook);
-        newBoardState.put(new Square(kingFileTo, rank), king);
-        return new Board(newBoardState);
+        Board result = copy();
+        result.toggleCastle(castle.getSide(), castle.getType());
+        return result;
     }
 
     public Board movePiece(SimpleMove move) {
-        Map<Square, Piece> newBoardState = new HashMap<>(pieces);
-        Piece piece = Optional.ofNullable(newBoardState.remove(move.getFrom())).orElseThrow();
-        newBoardState.put(move.getTo(), piece);
-        return new Board(newBoardState);
+        Board result = copy();
+        result.move(move.getFrom().getIndex(), move.getTo().getIndex());
+        return result;
     }
 
     public Board promote(PromotionMove move) {
-        Map<Square, Piece> newBoardState = new HashMap<>(pieces);
-        Optional.ofNullable(newBoardState.remove(move.getFrom())).orElseThrow();
-        newBoardState.put(move.getTo(), new Piece(move.getSide(), move.getResult()));
-        return new Board(newBoardState);
+        int from = move.getFrom().getIndex();
+        int to = move.getTo().getIndex();
+        int pawnIndex = requirePieceIndexAt(from);
+
+        Board result = copy();
+        result.toggle(pawnIndex, 1L << from);
+        result.clear(to);
+        result.toggle(pieceIndex(move.getSide(), move.getResult()), 1L << to);
+        return result;
     }
 
     public Board captureEnPassant(EnPassantCapture move) {
-        Map<Square, Piece> newBoardState = new HashMap<>(pieces);
-        Piece piece = Optional.ofNullable(newBoardState.remove(move.getFrom())).orElseThrow();
-        newBoardState.put(move.getTo(), piece);
-        newBoardState.remove(move.getCapturedSquare());
-        return new Board(newBoardState);
+        Board result = copy();
+        result.move(move.getFrom().getIndex(), move.getTo().getIndex());
+        result.clear(move.getCapturedSquare().getIndex());
+        return result;
+    }
+
+    private static Set<Square> toSquares(long bitboard) {
+        Set<Square> result = new HashSet<>();
+        while (bitboard != 0) {
+            result.add(Square.fromIndex(Long.numberOfTrailingZeros(bitboard)));
+            bitboard &= bitboard - 1;
+        }
+        return result;
     }
 
     public Set<Square> getBySideAndType(Side side, PieceType type) {
-        return pieces.entrySet()
-            .stream()
-            .filter(ent -> ent.getValue().getType() == type && ent.getValue().getSide() == side)
-            .map(Entry::getKey)
-            .collect(Collectors.toSet());
+        return toSquares(getBitboard(side, type));
     }
 
     public Set<Square> getBySide(Side side) {
-        return pieces.entrySet()
-            .stream()
-            .filter(ent -> ent.getValue().getSide() == side)
-            .map(Entry::getKey)
-            .collect(Collectors.toSet());
+        return toSquares(getBitboard(side));
     }
 }
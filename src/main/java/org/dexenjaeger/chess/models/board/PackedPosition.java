@@ -0,0 +1,83 @@
+package org.dexenjaeger.chess.models.board;
+
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+
+// A position packed into LENGTH longs, for holding many games in memory at once. The first four
+// hold a four bit code for the piece on each square, sixteen squares to a long, where 0 is an
+// empty square and any other code is the pieceIndex plus one. The last holds the rest of the
+// position:
+//   bit 0       the side to move, 1 for black
+//   bits 1-4    the castling rights, as Position keeps them
+//   bits 5-11   the en passant square, or NO_SQUARE
+//   bits 12-31  the fifty move rule counter
+//   bits 32-63  the turn number
+// The moves that led to the position aren't kept, so an unpacked position has nothing to take
+// back.
+public final class PackedPosition {
+    public static final int LENGTH = 5;
+    private static final int STATE = 4;
+    private static final int SQUARES_PER_LONG = 16;
+    private static final int CODE_BITS = 4;
+    private static final long CODE_MASK = 0xFL;
+    private static final int CASTLING_SHIFT = 1;
+    private static final int EN_PASSANT_SHIFT = 5;
+    private static final int FIFTY_MOVE_RULE_SHIFT = 12;
+    private static final int TURN_NUMBER_SHIFT = 32;
+    private static final long NO_SQUARE = 0x7FL;
+    private static final Side[] SIDES = Side.values();
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    private PackedPosition() {}
+
+    // Packs the position into the first LENGTH longs of the array.
+    public static void pack(Position position, long[] packed) {
+        for (int i = 0; i < STATE; i++) {
+            packed[i] = 0;
+        }
+        Board board = position.getBoard();
+        for (Side side:SIDES) {
+            for (PieceType type:PIECE_TYPES) {
+                long code = Board.pieceIndex(side, type) + 1;
+                long pieces = board.getBitboard(side, type);
+                while (pieces != 0) {
+                    int square = Long.numberOfTrailingZeros(pieces);
+                    pieces &= pieces - 1;
+                    packed[square / SQUARES_PER_LONG] |= code << (square % SQUARES_PER_LONG * CODE_BITS);
+                }
+            }
+        }
+        int enPassantSquare = position.getEnPassantIndex();
+        packed[STATE] = (position.getSideToMove() == Side.BLACK ? 1L : 0L)
+            | ((long) position.getCastlingBits() << CASTLING_SHIFT)
+            | ((enPassantSquare < 0 ? NO_SQUARE : enPassantSquare) << EN_PASSANT_SHIFT)
+            | ((long) position.getFiftyMoveRuleCounter() << FIFTY_MOVE_RULE_SHIFT)
+            | ((long) position.getTurnNumber() << TURN_NUMBER_SHIFT);
+    }
+
+    public static long[] pack(Position position) {
+        long[] packed = new long[LENGTH];
+        pack(position, packed);
+        return packed;
+    }
+
+    public static Position unpack(long[] packed) {
+        long[] pieceBitboards = new long[SIDES.length * PIECE_TYPES.length];
+        for (int square = 0; square < 64; square++) {
+            int code = (int) (packed[square / SQUARES_PER_LONG] >>> (square % SQUARES_PER_LONG * CODE_BITS) & CODE_MASK);
+            if (code != 0) {
+                pieceBitboards[code - 1] |= 1L << square;
+            }
+        }
+        long state = packed[STATE];
+        long enPassantSquare = state >>> EN_PASSANT_SHIFT & NO_SQUARE;
+        return new Position(
+            Board.fromPieceBitboards(pieceBitboards),
+            (state & 1) == 0 ? Side.WHITE : Side.BLACK,
+            (int) (state >>> CASTLING_SHIFT & 0xF),
+            enPassantSquare == NO_SQUARE ? -1 : (int) enPassantSquare,
+            (int) (state >>> FIFTY_MOVE_RULE_SHIFT & 0xF_FFFF),
+            (int) (state >>> TURN_NUMBER_SHIFT)
+        );
+    }
+}
@@ -0,0 +1,117 @@
+package org.dexenjaeger.chess.models.board;
+
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+
+// Values in centipawns for each piece on each square: the material value of the piece plus a
+// bonus or penalty for where it stands. Knights and bishops want the centre, rooks the seventh
+// rank, pawns want to advance and the king wants to stay behind its pawns. White pieces count
+// for white and black pieces against, so the sum over a board is its score from white's point
+// of view. The board keeps that sum up to date as pieces are toggled, the same way it keeps its
+// Zobrist key.
+public final class PieceSquareTables {
+    // In PieceType order.
+    private static final int[] MATERIAL = {100, 500, 320, 330, 900, 0};
+
+    // The tables are laid out as a board is drawn, with the eighth rank first, for white. Black
+    // uses them mirrored top to bottom.
+    private static final int[] PAWN = {
+         0,  0,  0,  0,  0,  0,  0,  0,
+        50, 50, 50, 50, 50, 50, 50, 50,
+        10, 10, 20, 30, 30, 20, 10, 10,
+         5,  5, 10, 25, 25, 10,  5,  5,
+         0,  0,  0, 20, 20,  0,  0,  0,
+         5, -5,-10,  0,  0,-10, -5,  5,
+         5, 10, 10,-20,-20, 10, 10,  5,
+         0,  0,  0,  0,  0,  0,  0,  0,
+    };
+    private static final int[] ROOK = {
+         0,  0,  0,  0,  0,  0,  0,  0,
+         5, 10, 10, 10, 10, 10, 10,  5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+        -5,  0,  0,  0,  0,  0,  0, -5,
+         0,  0,  0,  5,  5,  0,  0,  0,
+    };
+    private static final int[] KNIGHT = {
+        -50,-40,-30,-30,-30,-30,-40,-50,
+        -40,-20,  0,  0,  0,  0,-20,-40,
+        -30,  0, 10, 15, 15, 10,  0,-30,
+        -30,  5, 15, 20, 20, 15,  5,-30,
+        -30,  0, 15, 20, 20, 15,  0,-30,
+        -30,  5, 10, 15, 15, 10,  5,-30,
+        -40,-20,  0,  5,  5,  0,-20,-40,
+        -50,-40,-30,-30,-30,-30,-40,-50,
+    };
+    private static final int[] BISHOP = {
+        -20,-10,-10,-10,-10,-10,-10,-20,
+        -10,  0,  0,  0,  0,  0,  0,-10,
+        -10,  0,  5, 10, 10,  5,  0,-10,
+        -10,  5,  5, 10, 10,  5,  5,-10,
+        -10,  0, 10, 10, 10, 10,  0,-10,
+        -10, 10, 10, 10, 10, 10, 10,-10,
+        -10,  5,  0,  0,  0,  0,  5,-10,
+        -20,-10,-10,-10,-10,-10,-10,-20,
+    };
+    private static final int[] QUEEN = {
+        -20,-10,-10, -5, -5,-10,-10,-20,
+        -10,  0,  0,  0,  0,  0,  0,-10,
+        -10,  0,  5,  5,  5,  5,  0,-10,
+         -5,  0,  5,  5,  5,  5,  0, -5,
+          0,  0,  5,  5,  5,  5,  0, -5,
+        -10,  5,  5,  5,  5,  5,  0,-10,
+        -10,  0,  5,  0,  0,  0,  0,-10,
+        -20,-10,-10, -5, -5,-10,-10,-20,
+    };
+    private static final int[] KING = {
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -30,-40,-40,-50,-50,-40,-40,-30,
+        -20,-30,-30,-40,-40,-30,-30,-20,
+        -10,-20,-20,-20,-20,-20,-20,-10,
+         20, 20,  0,  0,  0,  0, 20, 20,
+         20, 30, 10,  0,  0, 10, 30, 20,
+    };
+    private static final int[][] TABLES = {PAWN, ROOK, KNIGHT, BISHOP, QUEEN, KING};
+
+    // VALUES[pieceIndex * 64 + squareIndex], signed for the side of the piece.
+    private static final int[] VALUES = new int[Side.values().length * PieceType.values().length * 64];
+
+    static {
+        for (Side side:Side.values()) {
+            for (PieceType type:PieceType.values()) {
+                int[] table = TABLES[type.ordinal()];
+                for (int square = 0; square < 64; square++) {
+                    int rank = square / 8;
+                    int file = square % 8;
+                    int row = side == Side.WHITE ? 7 - rank : rank;
+                    int value = MATERIAL[type.ordinal()] + table[row * 8 + file];
+                    VALUES[Board.pieceIndex(side, type) * 64 + square] = side == Side.WHITE ? value : -value;
+                }
+            }
+        }
+    }
+
+    private PieceSquareTables() {}
+
+    public static int getMaterialValue(PieceType type) {
+        return MATERIAL[type.ordinal()];
+    }
+
+    static int value(int pieceIndex, int squareIndex) {
+        return VALUES[pieceIndex * 64 + squareIndex];
+    }
+
+    // The sum of the values for every square in the mask.
+    static int values(int pieceIndex, long mask) {
+        int result = 0;
+        while (mask != 0) {
+            result += value(pieceIndex, Long.numberOfTrailingZeros(mask));
+            mask &= mask - 1;
+        }
+        return result;
+    }
+}
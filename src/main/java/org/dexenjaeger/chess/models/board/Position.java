@@ -0,0 +1,313 @@
+package org.dexenjaeger.chess.models.board;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import lombok.Getter;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.moves.Castle;
+import org.dexenjaeger.chess.models.moves.CastleType;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+
+// A mutable position for search. Moves are applied to a single board in place with makeMove and
+// taken back with unmakeMove, so exploring a line does not copy the board for every ply. The
+// position does not check that moves are legal; callers are expected to only make moves that
+// were generated for it.
+public class Position {
+    private static final int NONE = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+    // CASTLING_MASKS[n] holds the castling rights that survive a piece moving from or to the square
+    // with index n. Moving the king or a rook, or capturing a rook on its starting square, loses
+    // the corresponding rights.
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASKS, castlingBits(Side.WHITE) | castlingBits(Side.BLACK));
+        for (Side side:Side.values()) {
+            RankType rank = side == Side.WHITE ? RankType.ONE : RankType.EIGHT;
+            CASTLING_MASKS[new Square(FileType.E, rank).getIndex()] &= ~castlingBits(side);
+            for (CastleType type:CastleType.values()) {
+                CASTLING_MASKS[new Square(type.getRookFileFrom(), rank).getIndex()] &= ~castlingBit(side, type);
+            }
+        }
+    }
+
+    private static int castlingBit(Side side, CastleType type) {
+        return 1 << (side.ordinal() * CastleType.values().length + type.ordinal());
+    }
+
+    private static int castlingBits(Side side) {
+        int result = 0;
+        for (CastleType type:CastleType.values()) {
+            result |= castlingBit(side, type);
+        }
+        return result;
+    }
+
+    private static int castlingBits(Set<Castle> castlingRights) {
+        int result = 0;
+        for (Castle castle:castlingRights) {
+            result |= castlingBit(castle.getSide(), castle.getType());
+        }
+        return result;
+    }
+
+    private final Board board;
+    @Getter
+    private Side sideToMove;
+    private int castlingRights;
+    private int enPassantSquare;
+    @Getter
+    private int fiftyMoveRuleCounter;
+    // The number of the current turn, starting at 1 and incremented after each black move.
+    @Getter
+    private int turnNumber;
+
+    // The undo stack. Entry n describes the state before the nth move made on this position.
+    private int ply;
+    private int[] moveStack;
+    private int[] capturedPieceStack;
+    private int[] castlingRightsStack;
+    private int[] enPassantSquareStack;
+    private int[] fiftyMoveRuleCounterStack;
+    private long[] keyStack;
+
+    public Position(
+        Board board, Side sideToMove, Set<Castle> castlingRights,
+        Square enPassantSquare, int fiftyMoveRuleCounter, int turnNumber
+    ) {
+        this(
+            board.copy(), sideToMove, castlingBits(castlingRights),
+            enPassantSquare == null ? NONE : enPassantSquare.getIndex(), fiftyMoveRuleCounter, turnNumber
+        );
+    }
+
+    // Takes the board as it is, without copying it.
+    Position(
+        Board board, Side sideToMove, int castlingRights,
+        int enPassantSquare, int fiftyMoveRuleCounter, int turnNumber
+    ) {
+        this.board = board;
+        this.sideToMove = sideToMove;
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantSquare;
+        this.fiftyMoveRuleCounter = fiftyMoveRuleCounter;
+        this.turnNumber = turnNumber;
+        this.moveStack = new int[DEFAULT_CAPACITY];
+        this.capturedPieceStack = new int[DEFAULT_CAPACITY];
+        this.castlingRightsStack = new int[DEFAULT_CAPACITY];
+        this.enPassantSquareStack = new int[DEFAULT_CAPACITY];
+        this.fiftyMoveRuleCounterStack = new int[DEFAULT_CAPACITY];
+        this.keyStack = new long[DEFAULT_CAPACITY];
+    }
+
+    public Position(Board board, Side sideToMove) {
+        this(board, sideToMove, Set.of(), null, 0, 1);
+    }
+
+    private Position(Position other) {
+        this.board = other.board.copy();
+        this.sideToMove = other.sideToMove;
+        this.castlingRights = other.castlingRights;
+        this.enPassantSquare = other.enPassantSquare;
+        this.fiftyMoveRuleCounter = other.fiftyMoveRuleCounter;
+        this.turnNumber = other.turnNumber;
+        this.ply = other.ply;
+        this.moveStack = other.moveStack.clone();
+        this.capturedPieceStack = other.capturedPieceStack.clone();
+        this.castlingRightsStack = other.castlingRightsStack.clone();
+        this.enPassantSquareStack = other.enPassantSquareStack.clone();
+        this.fiftyMoveRuleCounterStack = other.fiftyMoveRuleCounterStack.clone();
+        this.keyStack = other.keyStack.clone();
+    }
+
+    // An independent copy, including the moves that can be taken back, for another thread to
+    // search.
+    public Position copy() {
+        return new Position(this);
+    }
+
+    // The board is updated in place by makeMove and unmakeMove. Use toBoard for a copy that
+    // does not change.
+    public Board getBoard() {
+        return board;
+    }
+
+    public Board toBoard() {
+        return board.copy();
+    }
+
+    public Set<Castle> getCastlingRights() {
+        Set<Castle> result = new HashSet<>();
+        for (Side side:Side.values()) {
+            for (CastleType type:CastleType.values()) {
+                if ((castlingRights & castlingBit(side, type)) != 0) {
+                    result.add(new Castle(side, type));
+                }
+            }
+        }
+        return result;
+    }
+
+    public boolean hasCastlingRight(Side side, CastleType type) {
+        return (castlingRights & castlingBit(side, type)) != 0;
+    }
+
+    int getCastlingBits() {
+        return castlingRights;
+    }
+
+    // The index of the en passant square, or -1 when there is none.
+    int getEnPassantIndex() {
+        return enPassantSquare;
+    }
+
+    // The square a pawn passed over with a two square advance on the previous move, as in FEN.
+    public Optional<Square> getEnPassantSquare() {
+        return enPassantSquare == NONE ? Optional.empty() : Optional.of(Square.fromIndex(enPassantSquare));
+    }
+
+    // The Zobrist key of the position: the pieces, the side to move, the castling rights and the
+    // en passant file. The board keeps its part of the key up to date as moves are made, so this
+    // takes constant time.
+    public long getZobristKey() {
+        return board.getZobristKey()
+            ^ Zobrist.sideToMove(sideToMove)
+            ^ Zobrist.castlingRights(castlingRights)
+            ^ Zobrist.enPassant(board, sideToMove, enPassantSquare);
+    }
+
+    public int getPly() {
+        return ply;
+    }
+
+    // Whether the position occurred earlier among the moves made on this position. Only the
+    // positions since the last capture or pawn move are compared, and only those with the same
+    // side to move.
+    public boolean isRepetition() {
+        int earliest = Math.max(0, ply - fiftyMoveRuleCounter);
+        long key = getZobristKey();
+        for (int i = ply - 2; i >= earliest; i -= 2) {
+            if (keyStack[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Optional<Move> getLastMove() {
+        return ply == 0 ? Optional.empty() : Optional.of(EncodedMove.toMove(moveStack[ply - 1]));
+    }
+
+    private void ensureCapacity() {
+        if (ply < moveStack.length) {
+            return;
+        }
+        int capacity = moveStack.length * 2;
+        moveStack = Arrays.copyOf(moveStack, capacity);
+        capturedPieceStack = Arrays.copyOf(capturedPieceStack, capacity);
+        castlingRightsStack = Arrays.copyOf(castlingRightsStack, capacity);
+        enPassantSquareStack = Arrays.copyOf(enPassantSquareStack, capacity);
+        fiftyMoveRuleCounterStack = Arrays.copyOf(fiftyMoveRuleCounterStack, capacity);
+        keyStack = Arrays.copyOf(keyStack, capacity);
+    }
+
+    public void makeMove(Move move) {
+        makeMove(EncodedMove.fromMove(move));
+    }
+
+    // Makes a move encoded with EncodedMove.
+    public void makeMove(int move) {
+        ensureCapacity();
+        moveStack[ply] = move;
+        castlingRightsStack[ply] = castlingRights;
+        enPassantSquareStack[ply] = enPassantSquare;
+        fiftyMoveRuleCounterStack[ply] = fiftyMoveRuleCounter;
+        capturedPieceStack[ply] = NONE;
+        keyStack[ply] = getZobristKey();
+
+        Side side = EncodedMove.getSide(move);
+        enPassantSquare = NONE;
+        if (EncodedMove.isCastle(move)) {
+            board.toggleCastle(side, EncodedMove.getCastleType(move));
+            castlingRights &= ~castlingBits(side);
+            fiftyMoveRuleCounter++;
+        } else {
+            int from = EncodedMove.getFrom(move);
+            int to = EncodedMove.getTo(move);
+            PieceType type = EncodedMove.getPieceType(move);
+            int movedPiece = Board.pieceIndex(side, type);
+            int capturedSquare = EncodedMove.isEnPassant(move) ? EncodedMove.getEnPassantCapturedSquare(move) : to;
+            int capturedPiece = board.pieceIndexAt(capturedSquare);
+            capturedPieceStack[ply] = capturedPiece;
+
+            if (capturedPiece >= 0) {
+                board.toggle(capturedPiece, 1L << capturedSquare);
+            }
+            board.toggle(movedPiece, 1L << from);
+            if (EncodedMove.isPromotion(move)) {
+                board.toggle(Board.pieceIndex(side, EncodedMove.getPromotionType(move)), 1L << to);
+            } else {
+                board.toggle(movedPiece, 1L << to);
+            }
+
+            castlingRights &= CASTLING_MASKS[from] & CASTLING_MASKS[to];
+            boolean isPawn = type == PieceType.PAWN;
+            if (isPawn && Math.abs(to - from) == 16) {
+                enPassantSquare = (from + to) / 2;
+            }
+            if (isPawn || capturedPiece >= 0) {
+                fiftyMoveRuleCounter = 0;
+            } else {
+                fiftyMoveRuleCounter++;
+            }
+        }
+
+        if (sideToMove == Side.BLACK) {
+            turnNumber++;
+        }
+        sideToMove = sideToMove.other();
+        ply++;
+    }
+
+    public void unmakeMove() {
+        if (ply == 0) {
+            throw new IllegalStateException("There is no move to take back.");
+        }
+        ply--;
+        int move = moveStack[ply];
+
+        sideToMove = sideToMove.other();
+        if (sideToMove == Side.BLACK) {
+            turnNumber--;
+        }
+
+        Side side = EncodedMove.getSide(move);
+        if (EncodedMove.isCastle(move)) {
+            board.toggleCastle(side, EncodedMove.getCastleType(move));
+        } else {
+            int from = EncodedMove.getFrom(move);
+            int to = EncodedMove.getTo(move);
+            int movedPiece = Board.pieceIndex(side, EncodedMove.getPieceType(move));
+            int capturedPiece = capturedPieceStack[ply];
+
+            if (EncodedMove.isPromotion(move)) {
+                board.toggle(Board.pieceIndex(side, EncodedMove.getPromotionType(move)), 1L << to);
+            } else {
+                board.toggle(movedPiece, 1L << to);
+            }
+            board.toggle(movedPiece, 1L << from);
+            if (capturedPiece >= 0) {
+                int capturedSquare = EncodedMove.isEnPassant(move) ? EncodedMove.getEnPassantCapturedSquare(move) : to;
+                board.toggle(capturedPiece, 1L << capturedSquare);
+            }
+        }
+
+        castlingRights = castlingRightsStack[ply];
+        enPassantSquare = enPassantSquareStack[ply];
+        fiftyMoveRuleCounter = fiftyMoveRuleCounterStack[ply];
+    }
+}
@@ -7,9 +7,30 @@ import org.dexenjaeger.chess.utils.Pair;
 
 @Value
 public class Square {
+    // Squares are indexed a1 = 0, b1 = 1, ..., h1 = 7, a2 = 8, ..., h8 = 63. This is the bit
+    // position of the square in a board's bitboards.
+    private static final Square[] BY_INDEX = new Square[64];
+
+    static {
+        for (RankType rank:RankType.values()) {
+            for (FileType file:FileType.values()) {
+                Square square = new Square(file, rank);
+                BY_INDEX[square.getIndex()] = square;
+            }
+        }
+    }
+
+    public static Square fromIndex(int index) {
+        return BY_INDEX[index];
+    }
+
     FileType file;
     RankType rank;
 
+    public int getIndex() {
+        return rank.ordinal() * 8 + file.ordinal();
+    }
+
     public String toString() {
         return String.format("%s%s", file, rank);
     }
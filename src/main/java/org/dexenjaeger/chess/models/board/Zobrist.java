@@ -0,0 +1,96 @@
+package org.dexenjaeger.chess.models.board;
+
+import java.util.Set;
+import java.util.SplittableRandom;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.moves.Castle;
+import org.dexenjaeger.chess.models.moves.CastleType;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+
+// Random keys for Zobrist hashing. The key of a position is the XOR of the key for each piece on
+// its square, the side to move, each castling right and the en passant file, so a move updates
+// the key by XORing in the keys for only what it changes.
+public final class Zobrist {
+    // The keys are seeded so that every run gives a position the same key.
+    private static final long SEED = 0x2B0B_15CA_57L;
+    private static final long FILE_A = 0x0101_0101_0101_0101L;
+    private static final long FILE_H = FILE_A << 7;
+    private static final int CASTLE_TYPES = CastleType.values().length;
+
+    private static final long[] PIECE_SQUARE = new long[Side.values().length * PieceType.values().length * 64];
+    private static final long BLACK_TO_MOVE;
+    // CASTLING[n] is the key for the castling rights with bits n, using the layout of
+    // Position.castlingBit.
+    private static final long[] CASTLING = new long[1 << (Side.values().length * CASTLE_TYPES)];
+    private static final long[] EN_PASSANT_FILE = new long[FileType.values().length];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < PIECE_SQUARE.length; i++) {
+            PIECE_SQUARE[i] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+        long[] castlingRights = new long[Side.values().length * CASTLE_TYPES];
+        for (int i = 0; i < castlingRights.length; i++) {
+            castlingRights[i] = random.nextLong();
+        }
+        for (int bits = 0; bits < CASTLING.length; bits++) {
+            for (int i = 0; i < castlingRights.length; i++) {
+                if ((bits & (1 << i)) != 0) {
+                    CASTLING[bits] ^= castlingRights[i];
+                }
+            }
+        }
+        for (int i = 0; i < EN_PASSANT_FILE.length; i++) {
+            EN_PASSANT_FILE[i] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {}
+
+    static long pieceSquare(int pieceIndex, int squareIndex) {
+        return PIECE_SQUARE[pieceIndex * 64 + squareIndex];
+    }
+
+    // The XOR of the piece keys for every square in the mask.
+    static long pieceSquares(int pieceIndex, long mask) {
+        long result = 0;
+        while (mask != 0) {
+            result ^= pieceSquare(pieceIndex, Long.numberOfTrailingZeros(mask));
+            mask &= mask - 1;
+        }
+        return result;
+    }
+
+    public static long sideToMove(Side side) {
+        return side == Side.BLACK ? BLACK_TO_MOVE : 0;
+    }
+
+    static long castlingRights(int castlingBits) {
+        return CASTLING[castlingBits];
+    }
+
+    public static long castlingRights(Set<Castle> castlingRights) {
+        int bits = 0;
+        for (Castle castle:castlingRights) {
+            bits |= 1 << (castle.getSide().ordinal() * CASTLE_TYPES + castle.getType().ordinal());
+        }
+        return CASTLING[bits];
+    }
+
+    // The en passant file only counts when a pawn of the side to move could make the capture.
+    // Otherwise the same position reached by a different move order would get another key.
+    public static long enPassant(Board board, Side sideToMove, int squareIndex) {
+        if (squareIndex < 0) {
+            return 0;
+        }
+        long target = 1L << squareIndex;
+        long capturers = sideToMove == Side.WHITE
+            ? ((target >>> 7) & ~FILE_A) | ((target >>> 9) & ~FILE_H)
+            : ((target << 7) & ~FILE_H) | ((target << 9) & ~FILE_A);
+        if ((capturers & board.getBitboard(sideToMove, PieceType.PAWN)) == 0) {
+            return 0;
+        }
+        return EN_PASSANT_FILE[squareIndex % 8];
+    }
+}
@@ -115,6 +115,15 @@ public class Game {
         return this;
     }
 
+    // Drops the most recently added variation from the current move. Callers that explore many
+    // lines, like perft, use this to keep the tree from growing with every line they visit.
+    public Game removeLastAttemptedMove() {
+        if (!gameNode.getChildren().isEmpty()) {
+            gameNode.getChildren().removeLast();
+        }
+        return this;
+    }
+
     public void goToAttemptedMove(Move childMove) {
         gameNode = gameNode.getChildren()
             .stream()
@@ -1,9 +1,18 @@
 package org.dexenjaeger.chess.models.game;
 
+import java.util.Optional;
+import java.util.Set;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.Value;
 import org.dexenjaeger.chess.models.NodeValue;
+import org.dexenjaeger.chess.models.Side;
 import org.dexenjaeger.chess.models.board.Board;
+import org.dexenjaeger.chess.models.board.Zobrist;
+import org.dexenjaeger.chess.models.moves.Castle;
 import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.models.moves.SinglePieceMove;
+import org.dexenjaeger.chess.models.pieces.PieceType;
 
 @Value
 public class GameSnapshot implements NodeValue {
@@ -12,6 +21,64 @@ public class GameSnapshot implements NodeValue {
     Board board;
     int fiftyMoveRuleCounter;
     String commentary;
+    // The positions on the line up to this one, for finding repetitions. Snapshots that aren't
+    // made by GameService.applyMove have none. It depends on how the line was reached rather than
+    // on the position, so it is left out of equality.
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    PositionHistory history;
+    // The castling rights after the move, kept so that they aren't worked out again from the
+    // start of the game. Like the history, only snapshots made by GameService.applyMove have
+    // them, and they are left out of equality.
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    Set<Castle> castlingRights;
+
+    public GameSnapshot(int turnNumber, Move move, Board board, int fiftyMoveRuleCounter, String commentary) {
+        this(turnNumber, move, board, fiftyMoveRuleCounter, commentary, null);
+    }
+
+    public GameSnapshot(
+        int turnNumber, Move move, Board board, int fiftyMoveRuleCounter, String commentary, PositionHistory history
+    ) {
+        this(turnNumber, move, board, fiftyMoveRuleCounter, commentary, history, null);
+    }
+
+    public GameSnapshot(
+        int turnNumber, Move move, Board board, int fiftyMoveRuleCounter, String commentary, PositionHistory history,
+        Set<Castle> castlingRights
+    ) {
+        this.turnNumber = turnNumber;
+        this.move = move;
+        this.board = board;
+        this.fiftyMoveRuleCounter = fiftyMoveRuleCounter;
+        this.commentary = commentary;
+        this.history = history;
+        this.castlingRights = castlingRights == null ? null : Set.copyOf(castlingRights);
+    }
+
+    public Optional<PositionHistory> getHistory() {
+        return Optional.ofNullable(history);
+    }
+
+    public Optional<Set<Castle>> getCastlingRights() {
+        return Optional.ofNullable(castlingRights);
+    }
+
+    // The Zobrist key of the position after the move, except for the castling rights, which are
+    // held by the Game. GameService.getZobristKey gives the full key.
+    public long getZobristKey() {
+        Side sideToMove = move.getSide().other();
+        long key = board.getZobristKey() ^ Zobrist.sideToMove(sideToMove);
+        if (move instanceof SinglePieceMove && ((SinglePieceMove) move).getType() == PieceType.PAWN) {
+            int from = ((SinglePieceMove) move).getFrom().getIndex();
+            int to = ((SinglePieceMove) move).getTo().getIndex();
+            if (Math.abs(to - from) == 16) {
+                key ^= Zobrist.enPassant(board, sideToMove, (from + to) / 2);
+            }
+        }
+        return key;
+    }
 
     @Override
     public String shortString() {
@@ -0,0 +1,65 @@
+package org.dexenjaeger.chess.models.game;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+// The Zobrist keys of the positions on one line of a game, newest first. A capture or pawn move
+// can't be taken back, so no position before one can occur again, and the list is cut there.
+// Lines that branch from the same move share the positions before it, so adding a position takes
+// constant space. Each position counts its earlier occurrences when it is added, so asking
+// whether it has occurred before takes constant time.
+@Getter
+public class PositionHistory {
+    private final long key;
+    // The number of times the position occurred earlier on the line.
+    private final int repetitions;
+    @Getter(AccessLevel.NONE)
+    private final PositionHistory previous;
+
+    private PositionHistory(long key, int repetitions, PositionHistory previous) {
+        this.key = key;
+        this.repetitions = repetitions;
+        this.previous = previous;
+    }
+
+    public static PositionHistory start(long key) {
+        return new PositionHistory(key, 0, null);
+    }
+
+    // The history after a move to the position with the given key. An irreversible move, like a
+    // capture or a pawn move, starts a new history.
+    public PositionHistory add(long key, boolean isReversible) {
+        if (!isReversible) {
+            return start(key);
+        }
+        // Only a position with the same side to move can match, so every other one is skipped.
+        // The nearest match has already counted the ones before it.
+        PositionHistory cursor = previous;
+        while (cursor != null) {
+            if (cursor.key == key) {
+                return new PositionHistory(key, cursor.repetitions + 1, this);
+            }
+            cursor = cursor.previous == null ? null : cursor.previous.previous;
+        }
+        return new PositionHistory(key, 0, this);
+    }
+
+    public boolean isRepetition() {
+        return repetitions > 0;
+    }
+
+    // The number of moves back to the previous occurrence of the position, or 0 when it hasn't
+    // occurred before.
+    public int getPliesSincePrevious() {
+        if (!isRepetition()) {
+            return 0;
+        }
+        int plies = 2;
+        PositionHistory cursor = previous.previous;
+        while (cursor.key != key) {
+            cursor = cursor.previous.previous;
+            plies += 2;
+        }
+        return plies;
+    }
+}
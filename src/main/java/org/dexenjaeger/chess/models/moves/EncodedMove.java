@@ -0,0 +1,165 @@
+package org.dexenjaeger.chess.models.moves;
+
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.board.FileType;
+import org.dexenjaeger.chess.models.board.RankType;
+import org.dexenjaeger.chess.models.board.Square;
+import org.dexenjaeger.chess.models.pieces.Piece;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+
+// Moves packed into an int so that search code can store and compare them without allocating.
+// Squares use Square.getIndex.
+//   bits 0-5    the square the piece moves from
+//   bits 6-11   the square the piece moves to
+//   bits 12-14  the moving piece's type
+//   bit  15     the moving side
+//   bits 16-17  the kind of move: normal, promotion, en passant or castle
+//   bits 18-20  the piece type a pawn promotes to
+// A castle is encoded as the king's move. No legal move is encoded as 0, so NONE can mark an
+// empty slot.
+public class EncodedMove {
+    public static final int NONE = 0;
+
+    private static final int TO_SHIFT = 6;
+    private static final int TYPE_SHIFT = 12;
+    private static final int SIDE_SHIFT = 15;
+    private static final int KIND_SHIFT = 16;
+    private static final int PROMOTION_SHIFT = 18;
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int TYPE_MASK = 0x7;
+
+    private static final int NORMAL = 0;
+    private static final int PROMOTION = 1;
+    private static final int EN_PASSANT = 2;
+    private static final int CASTLE = 3;
+
+    private static final Side[] SIDES = Side.values();
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    private static int encode(int from, int to, PieceType type, Side side, int kind) {
+        return from
+            | (to << TO_SHIFT)
+            | (type.ordinal() << TYPE_SHIFT)
+            | (side.ordinal() << SIDE_SHIFT)
+            | (kind << KIND_SHIFT);
+    }
+
+    public static int normal(int from, int to, PieceType type, Side side) {
+        return encode(from, to, type, side, NORMAL);
+    }
+
+    public static int promotion(int from, int to, Side side, PieceType result) {
+        return encode(from, to, PieceType.PAWN, side, PROMOTION) | (result.ordinal() << PROMOTION_SHIFT);
+    }
+
+    public static int enPassant(int from, int to, Side side) {
+        return encode(from, to, PieceType.PAWN, side, EN_PASSANT);
+    }
+
+    public static int castle(Side side, CastleType type) {
+        RankType rank = side == Side.WHITE ? RankType.ONE : RankType.EIGHT;
+        return encode(
+            new Square(FileType.E, rank).getIndex(),
+            new Square(type.getKingFileTo(), rank).getIndex(),
+            PieceType.KING, side, CASTLE
+        );
+    }
+
+    public static int getFrom(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int getTo(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    public static PieceType getPieceType(int move) {
+        return PIECE_TYPES[(move >>> TYPE_SHIFT) & TYPE_MASK];
+    }
+
+    public static Side getSide(int move) {
+        return SIDES[(move >>> SIDE_SHIFT) & 1];
+    }
+
+    private static int getKind(int move) {
+        return (move >>> KIND_SHIFT) & 0x3;
+    }
+
+    public static boolean isPromotion(int move) {
+        return getKind(move) == PROMOTION;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return getKind(move) == EN_PASSANT;
+    }
+
+    public static boolean isCastle(int move) {
+        return getKind(move) == CASTLE;
+    }
+
+    public static PieceType getPromotionType(int move) {
+        return PIECE_TYPES[(move >>> PROMOTION_SHIFT) & TYPE_MASK];
+    }
+
+    public static CastleType getCastleType(int move) {
+        return (getTo(move) & 7) == CastleType.SHORT.getKingFileTo().ordinal() ? CastleType.SHORT : CastleType.LONG;
+    }
+
+    // The square of the pawn taken by an en passant capture: the rank it moved from and the file
+    // it moved to.
+    public static int getEnPassantCapturedSquare(int move) {
+        return (getFrom(move) & ~7) | (getTo(move) & 7);
+    }
+
+    public static int fromMove(Move move) {
+        if (move instanceof Castle) {
+            return castle(move.getSide(), ((Castle) move).getType());
+        }
+        if (move instanceof PromotionMove) {
+            PromotionMove promotionMove = (PromotionMove) move;
+            return promotion(
+                promotionMove.getFrom().getIndex(), promotionMove.getTo().getIndex(),
+                move.getSide(), promotionMove.getResult()
+            );
+        }
+        if (move instanceof EnPassantCapture) {
+            EnPassantCapture enPassantCapture = (EnPassantCapture) move;
+            return enPassant(enPassantCapture.getFrom().getIndex(), enPassantCapture.getTo().getIndex(), move.getSide());
+        }
+        if (move instanceof SimpleMove) {
+            SimpleMove simpleMove = (SimpleMove) move;
+            return normal(
+                simpleMove.getFrom().getIndex(), simpleMove.getTo().getIndex(),
+                simpleMove.getType(), move.getSide()
+            );
+        }
+        throw new IllegalArgumentException(String.format("The move %s can't be encoded.", move));
+    }
+
+    public static Move toMove(int move) {
+        Side side = getSide(move);
+        switch (getKind(move)) {
+            case CASTLE:
+                return new Castle(side, getCastleType(move));
+            case PROMOTION:
+                return new PromotionMove(
+                    side,
+                    Square.fromIndex(getFrom(move)).getFile(),
+                    Square.fromIndex(getTo(move)).getFile(),
+                    getPromotionType(move)
+                );
+            case EN_PASSANT:
+                return new EnPassantCapture(
+                    side,
+                    Square.fromIndex(getFrom(move)).getFile(),
+                    Square.fromIndex(getTo(move)).getFile()
+                );
+            default:
+                return new SimpleMove(
+                    Square.fromIndex(getFrom(move)),
+                    Square.fromIndex(getTo(move)),
+                    new Piece(side, getPieceType(move))
+                );
+        }
+    }
+}
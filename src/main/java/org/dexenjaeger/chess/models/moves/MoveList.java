@@ -0,0 +1,78 @@
+package org.dexenjaeger.chess.models.moves;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+// A growable buffer of moves encoded with EncodedMove. A search can keep one list per ply and
+// clear it between nodes instead of building a new collection of move objects every time.
+public class MoveList {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MoveList(int capacity) {
+        moves = new int[capacity];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, Math.max(DEFAULT_CAPACITY, size * 2));
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[Objects.checkIndex(index, size)];
+    }
+
+    public void set(int index, int move) {
+        moves[Objects.checkIndex(index, size)] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    // Returns the index of the move or -1 if it isn't in the list.
+    public int indexOf(int move) {
+        for (int i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(int move) {
+        return indexOf(move) >= 0;
+    }
+
+    public void swap(int i, int j) {
+        int move = get(i);
+        moves[i] = get(j);
+        moves[j] = move;
+    }
+
+    public Set<Move> toMoves() {
+        Set<Move> result = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            result.add(EncodedMove.toMove(moves[i]));
+        }
+        return result;
+    }
+}
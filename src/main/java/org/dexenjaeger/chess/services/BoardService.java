@@ -4,19 +4,23 @@ import static java.lang.Math.abs;
 import static java.lang.Math.max;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.dexenjaeger.chess.config.Inject;
 import org.dexenjaeger.chess.models.Side;
 import org.dexenjaeger.chess.models.board.Board;
 import org.dexenjaeger.chess.models.board.FileType;
+import org.dexenjaeger.chess.models.board.Position;
 import org.dexenjaeger.chess.models.board.RankType;
 import org.dexenjaeger.chess.models.board.Square;
 import org.dexenjaeger.chess.models.moves.Castle;
 import org.dexenjaeger.chess.models.moves.CastleType;
 import org.dexenjaeger.chess.models.moves.EnPassantCapture;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
 import org.dexenjaeger.chess.models.moves.Move;
 import org.dexenjaeger.chess.models.moves.NormalMove;
 import org.dexenjaeger.chess.models.moves.PromotionMove;
@@ -24,6 +28,7 @@ import org.dexenjaeger.chess.models.moves.SimpleMove;
 import org.dexenjaeger.chess.models.moves.SinglePieceMove;
 import org.dexenjaeger.chess.models.pieces.Piece;
 import org.dexenjaeger.chess.models.pieces.PieceType;
+import org.dexenjaeger.chess.services.moves.AttackTables;
 
 public class BoardService {
 
@@ -66,10 +71,12 @@ public class BoardService {
     }
 
     private final PieceService pieceService;
+    private final LegalMoveService legalMoveService;
 
     @Inject
-    public BoardService(PieceService pieceService) {
+    public BoardService(PieceService pieceService, LegalMoveService legalMoveService) {
         this.pieceService = pieceService;
+        this.legalMoveService = legalMoveService;
     }
 
     // This method returns any move that satisfies the piece movement rules.
@@ -78,14 +85,45 @@ public class BoardService {
         return sources
             .stream()
             .map(sq -> new SimpleMove(sq, target, board.getPiece(sq).orElseThrow()))
-            .filter(mo -> pieceService.matchesPieceMovementRule(mo, board::getOccupyingSide))
+            .filter(mo -> pieceService.matchesPieceMovementRule(mo, board))
             .collect(Collectors.toSet());
     }
 
+    // Looks outward from the square with each piece's attack pattern and stops at the first
+    // attacker found. The square does not need to be occupied.
+    public boolean isSquareAttacked(Board board, Square square, Side bySide) {
+        return isSquareAttacked(board, square.getIndex(), bySide);
+    }
+
+    private boolean isSquareAttacked(Board board, int square, Side bySide) {
+        // A pawn of bySide attacks the square exactly when a pawn of the other side on the
+        // square would attack the pawn.
+        if ((AttackTables.pawnAttacks(bySide.other(), square) & board.getBitboard(bySide, PieceType.PAWN)) != 0) {
+            return true;
+        }
+        if ((AttackTables.knightAttacks(square) & board.getBitboard(bySide, PieceType.KNIGHT)) != 0) {
+            return true;
+        }
+        if ((AttackTables.kingAttacks(square) & board.getBitboard(bySide, PieceType.KING)) != 0) {
+            return true;
+        }
+        long occupied = board.getOccupied();
+        long queens = board.getBitboard(bySide, PieceType.QUEEN);
+        if ((AttackTables.rookAttacks(square, occupied) & (board.getBitboard(bySide, PieceType.ROOK) | queens)) != 0) {
+            return true;
+        }
+        return (AttackTables.bishopAttacks(square, occupied) & (board.getBitboard(bySide, PieceType.BISHOP) | queens)) != 0;
+    }
+
     public boolean isSideInCheck(Board board, Side side) {
-        return board.getBySideAndType(side, PieceType.KING)
-            .stream()
-            .anyMatch(sq -> !getMovesFromSourcesAndTarget(board, board.getBySide(side.other()), sq).isEmpty());
+        long kings = board.getBitboard(side, PieceType.KING);
+        while (kings != 0) {
+            if (isSquareAttacked(board, Long.numberOfTrailingZeros(kings), side.other())) {
+                return true;
+            }
+            kings &= kings - 1;
+        }
+        return false;
     }
 
     private Board applySingleMove(Board board, Move move) {
@@ -104,18 +142,22 @@ public class BoardService {
         throw new NotImplementedException(move.getClass());
     }
 
-    // This method tests the move on the given board without regard to whether the
+    // This method tests the move on the given position without regard to whether the
     // move satisfies piece movement rules or other restrictions on castling
-    // or capturing en passant.
-    private boolean satisfiesCheckingRule(Board board, Move move) {
-        return !isSideInCheck(applySingleMove(board, move), move.getSide());
+    // or capturing en passant. The position is left as it was found.
+    private boolean satisfiesCheckingRule(Position position, Move move) {
+        position.makeMove(move);
+        boolean result = !isSideInCheck(position.getBoard(), move.getSide());
+        position.unmakeMove();
+        return result;
     }
 
     // Publicly facing method that only returns legal moves
     public Set<SimpleMove> getLegalMovesForSideWithTarget(Board board, Side side, Square target) {
+        Position position = new Position(board, side);
         return getMovesFromSourcesAndTarget(board, board.getBySide(side), target)
             .stream()
-            .filter(move -> satisfiesCheckingRule(board, move))
+            .filter(move -> satisfiesCheckingRule(position, move))
             .collect(Collectors.toSet());
     }
 
@@ -124,14 +166,7 @@ public class BoardService {
         return getMoves(board, new Square(f, r));
     }
     public Set<NormalMove> getMoves(Board board, Square sq) {
-        return board.getPiece(sq)
-            .map(p -> pieceService
-                .getMoves(p, sq, board::getOccupyingSide)
-                .stream()
-                .filter(move -> isLegal(board, move))
-                .collect(Collectors.toSet())
-            )
-            .orElse(Set.of());
+        return legalMoveService.getNormalMoves(board, sq);
     }
 
     // Only returns squares corresponding to legal moves
@@ -167,9 +202,16 @@ public class BoardService {
         return hasPiece(board, FileType.E, rank, new Piece(move.getSide(), PieceType.KING));
     }
 
-    private boolean isLegalCastle(Board board, Castle move) {
-        return satisfiesCastlingPiecePlacementRule(board, move)
-            && satisfiesCheckingRule(board, move);
+    // The king may not castle out of, through or into check.
+    private boolean satisfiesCastlingCheckRule(Board board, Castle move) {
+        RankType rank = move.getSide() == Side.WHITE ? RankType.ONE : RankType.EIGHT;
+        return Stream.of(FileType.E, move.getType().getRookFileTo(), move.getType().getKingFileTo())
+            .noneMatch(f -> isSquareAttacked(board, new Square(f, rank), move.getSide().other()));
+    }
+
+    private boolean isLegalCastle(Position position, Castle move) {
+        return satisfiesCastlingPiecePlacementRule(position.getBoard(), move)
+            && satisfiesCastlingCheckRule(position.getBoard(), move);
     }
 
     private boolean satisfiesEnPasantPiecePlacementRule(Board board, EnPassantCapture move) {
@@ -186,25 +228,31 @@ public class BoardService {
             .isPresent();
     }
 
-    private boolean isLegalEnPassant(Board board, EnPassantCapture move) {
-        return satisfiesEnPasantPiecePlacementRule(board, move)
-            && satisfiesCheckingRule(board, move);
+    private boolean isLegalEnPassant(Position position, EnPassantCapture move) {
+        return satisfiesEnPasantPiecePlacementRule(position.getBoard(), move)
+            && satisfiesCheckingRule(position, move);
     }
 
-    private boolean isLegalNormal(Board board, NormalMove move) {
-        return pieceService.matchesPieceMovementRule(move, board::getOccupyingSide)
-            && satisfiesCheckingRule(board, move);
+    // Normal moves, which are nearly all the moves a game sees, are checked on the board as it
+    // is. Only castles and en passant captures need a position.
+    public boolean isLegal(Board board, Move move) {
+        if (move instanceof NormalMove) {
+            return legalMoveService.isLegalNormalMove(board, EncodedMove.fromMove(move));
+        }
+        return isLegal(new Position(board, move.getSide()), move);
     }
 
-    public boolean isLegal(Board board, Move move) {
+    // Tests the move against the current state of the position. The position is left as it was
+    // found.
+    public boolean isLegal(Position position, Move move) {
         if (move instanceof NormalMove) {
-            return isLegalNormal(board, (NormalMove) move);
+            return legalMoveService.isLegalNormalMove(position.getBoard(), EncodedMove.fromMove(move));
         }
         if (move instanceof Castle) {
-            return isLegalCastle(board, (Castle) move);
+            return isLegalCastle(position, (Castle) move);
         }
         if (move instanceof EnPassantCapture) {
-            return isLegalEnPassant(board, (EnPassantCapture) move);
+            return isLegalEnPassant(position, (EnPassantCapture) move);
         }
         throw new NotImplementedException(move.getClass());
     }
@@ -221,10 +269,7 @@ public class BoardService {
     }
 
     public Set<Move> getMovesBySide(Board board, Side side) {
-        Set<Square> squaresForSide = board.getBySide(side);
-        return squaresForSide.stream()
-            .flatMap(sq -> getMoves(board, sq).stream())
-            .collect(Collectors.toSet());
+        return new HashSet<>(legalMoveService.getNormalMoves(board, side));
     }
 
     public int distance(Square a, Square b) {
@@ -219,10 +219,14 @@ public class FenService {
                     new Square(sq.getFile(), endingRank),
                     PieceType.PAWN, previousSide
                 );
+                // When black made the advance, it was played during the previous turn.
                 return gameService.applyMove(
-                    Game.init(turnNumber, previousSide, previousBoard, fiftyMoveRuleCounter),
+                    Game.init(
+                        previousSide == Side.BLACK ? turnNumber - 1 : turnNumber,
+                        previousSide, previousBoard, fiftyMoveRuleCounter
+                    ).addCastlingRights(castlingRights),
                     previousMove
-                ).addCastlingRights(castlingRights);
+                );
             })
             .orElseGet(() -> Game.init(turnNumber, side, board, fiftyMoveRuleCounter).addCastlingRights(castlingRights));
     }
@@ -1,37 +1,41 @@
 package org.dexenjaeger.chess.services;
 
-import static org.dexenjaeger.chess.models.Side.BLACK;
 import static org.dexenjaeger.chess.models.Side.WHITE;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.dexenjaeger.chess.config.Inject;
 import org.dexenjaeger.chess.models.GameStatus;
 import org.dexenjaeger.chess.models.Side;
-import org.dexenjaeger.chess.models.board.Board;
+import org.dexenjaeger.chess.models.board.FileType;
+import org.dexenjaeger.chess.models.board.Position;
 import org.dexenjaeger.chess.models.board.RankType;
 import org.dexenjaeger.chess.models.board.Square;
+import org.dexenjaeger.chess.models.board.Zobrist;
 import org.dexenjaeger.chess.models.game.Game;
 import org.dexenjaeger.chess.models.game.GameSnapshot;
+import org.dexenjaeger.chess.models.game.PositionHistory;
 import org.dexenjaeger.chess.models.moves.Castle;
 import org.dexenjaeger.chess.models.moves.CastleType;
-import org.dexenjaeger.chess.models.moves.EnPassantCapture;
 import org.dexenjaeger.chess.models.moves.Move;
 import org.dexenjaeger.chess.models.moves.SinglePieceMove;
 import org.dexenjaeger.chess.models.moves.ZeroMove;
-import org.dexenjaeger.chess.models.pieces.Piece;
 import org.dexenjaeger.chess.models.pieces.PieceType;
 import org.dexenjaeger.chess.utils.TreeNode;
 
 public class GameService {
     private final BoardService boardService;
+    private final LegalMoveService legalMoveService;
 
     @Inject
-    public GameService(BoardService boardService) {
+    public GameService(BoardService boardService, LegalMoveService legalMoveService) {
         this.boardService = boardService;
+        this.legalMoveService = legalMoveService;
     }
 
     public Set<Castle> getCastlingTypes() {
@@ -53,79 +57,142 @@ public class GameService {
         return boardService.isSideInCheck(game.getCurrentBoard(), currentSide(game));
     }
 
-    private Set<EnPassantCapture> enPassantCaptures(
-        Board board, Supplier<Optional<SinglePieceMove>> getPreviousMove, Side side
-    ) {
-        return getPreviousMove.get()
-            .filter(previous -> previous.getType() == PieceType.PAWN)
-            .filter(previous -> {
-                if (side == WHITE) {
-                    return previous.getFrom().getRank() == RankType.SEVEN
-                        && previous.getTo().getRank() == RankType.FIVE;
+    public boolean isInCheck(Position position) {
+        return boardService.isSideInCheck(position.getBoard(), position.getSideToMove());
+    }
+
+    private Optional<Square> enPassantSquare(Game game) {
+        Move previous = game.getPreviousMove();
+        if (!(previous instanceof SinglePieceMove) || ((SinglePieceMove) previous).getType() != PieceType.PAWN) {
+            return Optional.empty();
+        }
+        Square from = ((SinglePieceMove) previous).getFrom();
+        Square to = ((SinglePieceMove) previous).getTo();
+        if (Math.abs(from.getRank().ordinal() - to.getRank().ordinal()) != 2) {
+            return Optional.empty();
+        }
+        return from.getRank().shift(previous.getSide() == WHITE ? 1 : -1)
+            .map(r -> new Square(from.getFile(), r));
+    }
+
+    private void removeCastlingRights(Set<Castle> castlingRights, Square square) {
+        for (Side side:Side.values()) {
+            if (square.getRank() != (side == WHITE ? RankType.ONE : RankType.EIGHT)) {
+                continue;
+            }
+            for (CastleType type:CastleType.values()) {
+                if (square.getFile() == FileType.E || square.getFile() == type.getRookFileFrom()) {
+                    castlingRights.remove(new Castle(side, type));
                 }
-                return previous.getFrom().getRank() == RankType.TWO
-                    && previous.getTo().getRank() == RankType.FOUR;
-            })
-            .stream()
-            .flatMap(previous -> Stream.concat(
-                    previous.getFrom().getFile().shift(-1).stream(),
-                    previous.getFrom().getFile().shift(1).stream()
-            )
-                .map(f -> new Square(f, previous.getTo().getRank()))
-                .filter(
-                    sq -> board
-                        .getPiece(sq)
-                        .filter(p -> p.equals(new Piece(side, PieceType.PAWN)))
-                        .isPresent()
-                )
-                .map(sq -> new EnPassantCapture(
-                    side, sq.getFile(), previous.getFrom().getFile()
-                )))
-            .filter(move -> boardService.isLegal(board, move))
-            .collect(Collectors.toSet());
+            }
+        }
     }
 
-    public Set<Move> getAvailableMoves(Game game) {
-        Board board = game.getCurrentBoard();
+    private void removeCastlingRights(Set<Castle> castlingRights, Move move) {
+        if (move instanceof Castle) {
+            castlingRights.removeIf(castle -> castle.getSide() == move.getSide());
+        } else if (move instanceof SinglePieceMove) {
+            removeCastlingRights(castlingRights, ((SinglePieceMove) move).getFrom());
+            removeCastlingRights(castlingRights, ((SinglePieceMove) move).getTo());
+        }
+    }
+
+    // The game holds the castling rights from its first position. A right is lost once the king
+    // or that rook moves, or a piece lands on the rook's starting square. Snapshots made by
+    // applyMove keep the rights after their move. Others are worked out from the moves back to
+    // the last snapshot that kept them, or to the start of the game.
+    private Set<Castle> castlingRights(Game game) {
+        TreeNode<GameSnapshot> cursor = game.getGameNode();
+        Optional<Set<Castle>> stored = cursor.getValue().getCastlingRights();
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+        List<Move> moves = new ArrayList<>();
+        Set<Castle> result = null;
+        while (result == null && cursor.getParent().isPresent()) {
+            moves.add(cursor.getValue().getMove());
+            cursor = cursor.getParent().get();
+            result = cursor.getValue().getCastlingRights().map(HashSet::new).orElse(null);
+        }
+        if (result == null) {
+            result = new HashSet<>(game.getCastlingRights());
+        }
+        for (int i = moves.size() - 1; i >= 0 && !result.isEmpty(); i--) {
+            removeCastlingRights(result, moves.get(i));
+        }
+        return result;
+    }
+
+    public Set<Castle> getCastlingRights(Game game) {
+        return new HashSet<>(castlingRights(game));
+    }
+
+    // The same key that toPosition(game).getZobristKey() would give, without copying the board.
+    public long getZobristKey(Game game) {
+        return game.getGameNode().getValue().getZobristKey() ^ Zobrist.castlingRights(castlingRights(game));
+    }
+
+    // Creates a position that can be searched with make and unmake without touching the game.
+    public Position toPosition(Game game) {
+        GameSnapshot snapshot = game.getGameNode().getValue();
         Side side = currentSide(game);
-        Set<Move> result = boardService.getMovesBySide(
-            board, side
+        return new Position(
+            snapshot.getBoard(),
+            side,
+            castlingRights(game),
+            enPassantSquare(game).orElse(null),
+            snapshot.getFiftyMoveRuleCounter(),
+            side == WHITE ? snapshot.getTurnNumber() + 1 : snapshot.getTurnNumber()
         );
+    }
 
-        result.addAll(enPassantCaptures(
-            board,
-            () -> {
-                Move m = game.getPreviousMove();
-                if (m instanceof SinglePieceMove) {
-                    return Optional.of((SinglePieceMove) m);
-                }
-                return Optional.empty();
-            },
-            side
-        ));
+    public Set<Move> getAvailableMoves(Game game) {
+        return getAvailableMoves(toPosition(game));
+    }
 
-        result.addAll(game.getCastlingRights().stream()
-            .filter(c -> boardService.isLegal(board, c))
-            .collect(Collectors.toSet()));
+    // Returns the legal moves for the side to move. The position is left as it was found.
+    public Set<Move> getAvailableMoves(Position position) {
+        return legalMoveService.getLegalMoves(position);
+    }
 
-        return result;
+    private PositionHistory getHistory(Game game) {
+        return game.getGameNode().getValue().getHistory()
+            .orElseGet(() -> PositionHistory.start(getZobristKey(game)));
+    }
+
+    // The number of times the current position occurred earlier in the game, counting the lines
+    // it was detached from.
+    public int getRepetitions(Game game) {
+        return game.getGameNode().getValue().getHistory().map(PositionHistory::getRepetitions).orElse(0);
     }
 
+    // The number of moves back to the previous occurrence of the current position, or 0 when it
+    // hasn't occurred before.
+    public int getPliesSinceRepetition(Game game) {
+        return game.getGameNode().getValue().getHistory().map(PositionHistory::getPliesSincePrevious).orElse(0);
+    }
+
+    // A position that occurs for the third time is a draw.
     public GameStatus getGameStatus(Game game) {
-        Side side = currentSide(game);
-        if (game.getCurrentBoard().getBySide(WHITE).size() == 1 && game.getCurrentBoard().getBySide(BLACK).size() == 1) {
+        GameStatus status = getGameStatus(toPosition(game));
+        if (!status.isCheckmate() && getRepetitions(game) >= 2) {
             return GameStatus.STALEMATE;
         }
-        if (getAvailableMoves(game).isEmpty()) {
-            if (isInCheck(game)) {
-                return side == WHITE ? GameStatus.BLACK_WON : GameStatus.WHITE_WON;
-            }
+        return status;
+    }
+
+    // A position where neither side has the material to give mate is a draw. Checkmate and
+    // stalemate come from one pass over the position, which stops at the first legal move rather
+    // than generating them all.
+    public GameStatus getGameStatus(Position position) {
+        if (position.getBoard().isInsufficientMaterial()) {
             return GameStatus.STALEMATE;
         }
-        if (game.getGameNode().getValue().getFiftyMoveRuleCounter() >= 50) {
+        GameStatus status = legalMoveService.getStatus(position);
+        if (!status.isCheckmate() && position.getFiftyMoveRuleCounter() >= 50) {
             return GameStatus.STALEMATE;
         }
-        return side == WHITE ? GameStatus.WHITE_TO_MOVE : GameStatus.BLACK_TO_MOVE;
+        return status;
     }
 
     public Game applyMove(Game game, Move move) {
@@ -142,12 +209,22 @@ public class GameService {
         } else {
             newFiftyMoveCounter = game.getGameNode().getValue().getFiftyMoveRuleCounter() + 1;
         }
-        return game.addMove(new GameSnapshot(
+        GameSnapshot snapshot = new GameSnapshot(
             move.getSide() == Side.WHITE ? previousMoveSummary.getTurnNumber() + 1 : previousMoveSummary.getTurnNumber(),
             move,
             boardService.applyMove(game.getCurrentBoard(), move),
             newFiftyMoveCounter,
             null
+        );
+        // The castling rights are part of the key, so a position where a right was lost doesn't
+        // match the positions before it.
+        Set<Castle> castlingRights = getCastlingRights(game);
+        removeCastlingRights(castlingRights, move);
+        PositionHistory history = getHistory(game).add(
+            snapshot.getZobristKey() ^ Zobrist.castlingRights(castlingRights), newFiftyMoveCounter != 0
+        );
+        return game.addMove(new GameSnapshot(
+            snapshot.getTurnNumber(), move, snapshot.getBoard(), newFiftyMoveCounter, null, history, castlingRights
         ));
     }
 
@@ -164,6 +241,8 @@ public class GameService {
         return count;
     }
 
+    // A new game starting from the current position. The positions that led to it are kept for
+    // finding repetitions.
     public Game detachGameState(Game game) {
         GameSnapshot gameSnapshot = game.getGameNode().getValue();
         return Game.init(new GameSnapshot(
@@ -171,8 +250,32 @@ public class GameService {
                 new ZeroMove(gameSnapshot.getMove().getSide()),
                 gameSnapshot.getBoard(),
                 gameSnapshot.getFiftyMoveRuleCounter(),
-                gameSnapshot.getCommentary()
+                gameSnapshot.getCommentary(),
+                gameSnapshot.getHistory().orElse(null)
             ))
-            .addCastlingRights(game.getCastlingRights());
+            .addCastlingRights(getCastlingRights(game));
+    }
+
+    // Adds the moves below the current position of the other game to the game, next to the
+    // moves it already has. Both games must be at the same position and are left there.
+    public Game mergeDescendents(Game game, Game gameToMerge) {
+        if (!game.getCurrentBoard().equals(gameToMerge.getCurrentBoard())) {
+            throw new ServiceException(String.format(
+                "Game board %s doesn't match the game board to merge %s.",
+                game.getCurrentBoard(), gameToMerge.getCurrentBoard()
+            ));
+        }
+        for (Move move:gameToMerge.getAttemptedMoves()) {
+            if (!game.getAttemptedMoves().contains(move)) {
+                applyMove(game, move);
+            } else {
+                game.goToAttemptedMove(move);
+            }
+            gameToMerge.goToAttemptedMove(move);
+            mergeDescendents(game, gameToMerge);
+            game.goToParentMove();
+            gameToMerge.goToParentMove();
+        }
+        return game;
     }
 }
@@ -0,0 +1,530 @@
+package org.dexenjaeger.chess.services;
+
+import static org.dexenjaeger.chess.models.pieces.PieceType.BISHOP;
+import static org.dexenjaeger.chess.models.pieces.PieceType.KING;
+import static org.dexenjaeger.chess.models.pieces.PieceType.KNIGHT;
+import static org.dexenjaeger.chess.models.pieces.PieceType.PAWN;
+import static org.dexenjaeger.chess.models.pieces.PieceType.QUEEN;
+import static org.dexenjaeger.chess.models.pieces.PieceType.ROOK;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.dexenjaeger.chess.config.Inject;
+import org.dexenjaeger.chess.models.GameStatus;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.board.Board;
+import org.dexenjaeger.chess.models.board.FileType;
+import org.dexenjaeger.chess.models.board.Position;
+import org.dexenjaeger.chess.models.board.RankType;
+import org.dexenjaeger.chess.models.board.Square;
+import org.dexenjaeger.chess.models.moves.CastleType;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.models.moves.MoveList;
+import org.dexenjaeger.chess.models.moves.NormalMove;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+import org.dexenjaeger.chess.services.moves.AttackTables;
+
+// Generates only legal moves. The pieces giving check and the pieces pinned to the king are found
+// once per position and used to mask the targets of every other piece, so most moves never have
+// to be played to be tested. King moves and en passant captures are still verified one at a time.
+public class LegalMoveService {
+    private static final long ALL_SQUARES = -1L;
+    private static final PieceType[] NON_KING_TYPES = {PAWN, ROOK, KNIGHT, BISHOP, QUEEN};
+    // The order hasAnyLegalMove tries the pieces in, cheapest targets first.
+    private static final PieceType[] CHEAPEST_FIRST = {KNIGHT, PAWN, BISHOP, ROOK, QUEEN};
+    private static final long RANK_ONE = 0xFFL;
+    private static final long RANK_EIGHT = 0xFF00_0000_0000_0000L;
+
+    private final PieceService pieceService;
+
+    @Inject
+    public LegalMoveService(PieceService pieceService) {
+        this.pieceService = pieceService;
+    }
+
+    // Adds every legal move for the side to move, including en passant captures and castles, to
+    // the list. The position is left as it was found.
+    public void generateLegalMoves(Position position, MoveList moves) {
+        addNormalMoves(moves, position.getBoard(), position.getSideToMove(), ALL_SQUARES, ALL_SQUARES, ALL_SQUARES);
+        addEnPassantCaptures(moves, position);
+        addCastles(moves, position);
+    }
+
+    // The legal moves are generated in two stages, so that a search that finds what it needs
+    // among the captures and promotions never generates the rest. Together the stages give the
+    // same moves as generateLegalMoves.
+    public void generateTacticalMoves(Position position, MoveList moves) {
+        Side side = position.getSideToMove();
+        long opponents = position.getBoard().getBitboard(side.other());
+        addNormalMoves(moves, position.getBoard(), side, ALL_SQUARES, opponents, opponents | promotionRank(side));
+        addEnPassantCaptures(moves, position);
+    }
+
+    public void generateQuietMoves(Position position, MoveList moves) {
+        Side side = position.getSideToMove();
+        long opponents = position.getBoard().getBitboard(side.other());
+        addNormalMoves(moves, position.getBoard(), side, ALL_SQUARES, ~opponents, ~(opponents | promotionRank(side)));
+        addCastles(moves, position);
+    }
+
+    // The normal moves that check the opposing king, found from the squares that attack it rather
+    // than by testing every move. A piece checks directly from a square its kind attacks the king
+    // from, or uncovers a check when it stands alone between the king and a slider of its own side
+    // and leaves the line. Promotions, castles and en passant captures that check aren't added,
+    // so they are left to generateTacticalMoves and generateQuietMoves, which give every move.
+    public void generateChecks(Position position, MoveList moves) {
+        Board board = position.getBoard();
+        Side side = position.getSideToMove();
+        long targetKings = board.getBitboard(side.other(), KING);
+        if (Long.bitCount(targetKings) != 1) {
+            return;
+        }
+        int target = Long.numberOfTrailingZeros(targetKings);
+        long occupied = board.getOccupied();
+        long notPromotion = ~promotionRank(side);
+        long discoverers = blockers(board, target, side, side);
+
+        long kings = board.getBitboard(side, KING);
+        int king = -1;
+        long checkMask = ALL_SQUARES;
+        long pinned = 0;
+        if (Long.bitCount(kings) == 1) {
+            king = Long.numberOfTrailingZeros(kings);
+            checkMask = checkMask(board, side, king);
+            pinned = pinnedPieces(board, side, king);
+        }
+
+        for (PieceType type:NON_KING_TYPES) {
+            long checkSquares;
+            switch (type) {
+                case PAWN:
+                    checkSquares = AttackTables.pawnAttacks(side.other(), target);
+                    break;
+                case KNIGHT:
+                    checkSquares = AttackTables.knightAttacks(target);
+                    break;
+                case BISHOP:
+                    checkSquares = AttackTables.bishopAttacks(target, occupied);
+                    break;
+                case ROOK:
+                    checkSquares = AttackTables.rookAttacks(target, occupied);
+                    break;
+                default:
+                    checkSquares = AttackTables.queenAttacks(target, occupied);
+            }
+            long pieces = board.getBitboard(side, type);
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                long toMask = checkSquares;
+                if ((discoverers & (1L << from)) != 0) {
+                    toMask |= ~AttackTables.line(target, from);
+                }
+                long targets = pieceService.getTargets(side, type, from, board) & checkMask & toMask;
+                if (type == PAWN) {
+                    targets &= notPromotion;
+                }
+                if ((pinned & (1L << from)) != 0) {
+                    targets &= AttackTables.line(king, from);
+                }
+                pieceService.addMoves(moves, side, type, from, targets);
+            }
+        }
+
+        // The king can only uncover a check.
+        long kingDiscoverers = kings & discoverers;
+        while (kingDiscoverers != 0) {
+            int from = Long.numberOfTrailingZeros(kingDiscoverers);
+            kingDiscoverers &= kingDiscoverers - 1;
+            long targets = safeKingTargets(board, side, from, ~AttackTables.line(target, from));
+            pieceService.addMoves(moves, side, KING, from, targets);
+        }
+    }
+
+    private static long promotionRank(Side side) {
+        return side == Side.WHITE ? RANK_EIGHT : RANK_ONE;
+    }
+
+    // Whether the move, which must be legal, checks the opposing king. Castles and en passant
+    // captures are counted as quiet, which is close enough for ordering moves.
+    public boolean givesCheck(Position position, int move) {
+        if (EncodedMove.isCastle(move) || EncodedMove.isEnPassant(move)) {
+            return false;
+        }
+        Board board = position.getBoard();
+        Side side = EncodedMove.getSide(move);
+        long kings = board.getBitboard(side.other(), KING);
+        if (kings == 0) {
+            return false;
+        }
+        int king = Long.numberOfTrailingZeros(kings);
+        int from = EncodedMove.getFrom(move);
+        int to = EncodedMove.getTo(move);
+        long occupied = (board.getOccupied() & ~(1L << from)) | (1L << to);
+        PieceType type = EncodedMove.isPromotion(move) ? EncodedMove.getPromotionType(move) : EncodedMove.getPieceType(move);
+        long direct;
+        switch (type) {
+            case PAWN:
+                direct = AttackTables.pawnAttacks(side, to);
+                break;
+            case KNIGHT:
+                direct = AttackTables.knightAttacks(to);
+                break;
+            case BISHOP:
+                direct = AttackTables.bishopAttacks(to, occupied);
+                break;
+            case ROOK:
+                direct = AttackTables.rookAttacks(to, occupied);
+                break;
+            case QUEEN:
+                direct = AttackTables.queenAttacks(to, occupied);
+                break;
+            default:
+                direct = 0;
+        }
+        if ((direct & kings) != 0) {
+            return true;
+        }
+        // A piece moving off a line can uncover an attack by another piece behind it. The moving
+        // piece is still on its old square on the board, so it is left out.
+        return (AttackTables.attackersTo(board, king, side, occupied) & ~(1L << from)) != 0;
+    }
+
+    // Whether the side to move is checkmated or stalemated, found from the position alone. The
+    // checks are found once and shared with the search for a legal move, which stops at the first
+    // one. Draws that depend on the material or the game history are left to the caller.
+    public GameStatus getStatus(Position position) {
+        Side side = position.getSideToMove();
+        long checkers = checkers(position.getBoard(), side);
+        if (hasAnyLegalMove(position, checkers)) {
+            return side == Side.WHITE ? GameStatus.WHITE_TO_MOVE : GameStatus.BLACK_TO_MOVE;
+        }
+        if (checkers != 0) {
+            return side == Side.WHITE ? GameStatus.BLACK_WON : GameStatus.WHITE_WON;
+        }
+        return GameStatus.STALEMATE;
+    }
+
+    // Whether generateLegalMoves would add any move, without generating them.
+    public boolean hasAnyLegalMove(Position position) {
+        return hasAnyLegalMove(position, checkers(position.getBoard(), position.getSideToMove()));
+    }
+
+    // The pieces checking the side's king. Boards without exactly one king for the side have none.
+    private long checkers(Board board, Side side) {
+        long kings = board.getBitboard(side, KING);
+        if (Long.bitCount(kings) != 1) {
+            return 0;
+        }
+        return AttackTables.attackersTo(board, Long.numberOfTrailingZeros(kings), side.other(), board.getOccupied());
+    }
+
+    // The pieces are tried with the same masks as addNormalMoves, so only the existence of a
+    // target matters. The king comes last, since each of its targets has to be tested for
+    // attacks. Castles are never needed, since a king that can castle can also step toward the
+    // rook.
+    private boolean hasAnyLegalMove(Position position, long checkers) {
+        Board board = position.getBoard();
+        Side side = position.getSideToMove();
+        long kings = board.getBitboard(side, KING);
+        long occupied = board.getOccupied();
+
+        if (Long.bitCount(checkers) <= 1) {
+            int king = -1;
+            long checkMask = ALL_SQUARES;
+            long pinned = 0;
+            if (Long.bitCount(kings) == 1) {
+                king = Long.numberOfTrailingZeros(kings);
+                if (checkers != 0) {
+                    checkMask = checkers | AttackTables.between(king, Long.numberOfTrailingZeros(checkers));
+                }
+                pinned = pinnedPieces(board, side, king);
+            }
+            for (PieceType type:CHEAPEST_FIRST) {
+                long pieces = board.getBitboard(side, type);
+                while (pieces != 0) {
+                    int from = Long.numberOfTrailingZeros(pieces);
+                    pieces &= pieces - 1;
+                    long targets = pieceService.getTargets(side, type, from, board) & checkMask;
+                    if ((pinned & (1L << from)) != 0) {
+                        targets &= AttackTables.line(king, from);
+                    }
+                    if (targets != 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        Side other = side.other();
+        while (kings != 0) {
+            int from = Long.numberOfTrailingZeros(kings);
+            kings &= kings - 1;
+            long withoutKing = occupied ^ (1L << from);
+            long targets = pieceService.getTargets(side, KING, from, board);
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                if (AttackTables.attackersTo(board, to, other, withoutKing) == 0) {
+                    return true;
+                }
+            }
+        }
+
+        // An en passant capture can be the only way out of a check by a pawn.
+        if (position.getEnPassantSquare().isEmpty()) {
+            return false;
+        }
+        MoveList moves = new MoveList();
+        addEnPassantCaptures(moves, position);
+        return !moves.isEmpty();
+    }
+
+    // Whether a normal move or promotion, encoded with EncodedMove, is legal on the board, found
+    // without making the move or allocating. The piece has to be on its square and reach the
+    // target by its movement rules, which for sliders means the line between them is clear, and
+    // a pawn has to promote exactly when it reaches the last rank. Then no piece of the other side may attack the king once the move is made: the occupied
+    // squares are updated for the move and the captured piece is left out, which covers pins,
+    // answers to check and the king stepping into an attack alike. Castles and en passant
+    // captures change more than two squares and aren't handled here.
+    public boolean isLegalNormalMove(Board board, int move) {
+        Side side = EncodedMove.getSide(move);
+        PieceType type = EncodedMove.getPieceType(move);
+        int from = EncodedMove.getFrom(move);
+        int to = EncodedMove.getTo(move);
+        long fromMask = 1L << from;
+        long toMask = 1L << to;
+        if (
+            (board.getBitboard(side, type) & fromMask) == 0
+                || (pieceService.getTargets(side, type, from, board) & toMask) == 0
+                || type == PAWN && ((toMask & (RANK_ONE | RANK_EIGHT)) != 0) != EncodedMove.isPromotion(move)
+        ) {
+            return false;
+        }
+
+        long occupied = (board.getOccupied() & ~fromMask) | toMask;
+        long kings = board.getBitboard(side, KING);
+        if (type == KING) {
+            kings = (kings & ~fromMask) | toMask;
+        }
+        Side other = side.other();
+        while (kings != 0) {
+            if ((AttackTables.attackersTo(board, Long.numberOfTrailingZeros(kings), other, occupied) & ~toMask) != 0) {
+                return false;
+            }
+            kings &= kings - 1;
+        }
+        return true;
+    }
+
+    public Set<Move> getLegalMoves(Position position) {
+        MoveList moves = new MoveList();
+        generateLegalMoves(position, moves);
+        return moves.toMoves();
+    }
+
+    private Set<NormalMove> toNormalMoves(MoveList moves) {
+        Set<NormalMove> result = new HashSet<>();
+        for (int i = 0; i < moves.size(); i++) {
+            result.add((NormalMove) EncodedMove.toMove(moves.get(i)));
+        }
+        return result;
+    }
+
+    // Legal moves for the side that don't depend on the game history, so no en passant
+    // captures or castles.
+    public Set<NormalMove> getNormalMoves(Board board, Side side) {
+        MoveList moves = new MoveList();
+        addNormalMoves(moves, board, side, ALL_SQUARES, ALL_SQUARES, ALL_SQUARES);
+        return toNormalMoves(moves);
+    }
+
+    // The number of moves getNormalMoves would return. The targets of each piece are found as
+    // for generating the moves, but they are only counted, so nothing is allocated.
+    public int countNormalMoves(Board board, Side side) {
+        return addNormalMoves(null, board, side, ALL_SQUARES, ALL_SQUARES, ALL_SQUARES);
+    }
+
+    public Set<NormalMove> getNormalMoves(Board board, Square from) {
+        MoveList moves = new MoveList();
+        board.getOccupyingSide(from)
+            .ifPresent(side -> addNormalMoves(moves, board, side, 1L << from.getIndex(), ALL_SQUARES, ALL_SQUARES));
+        return toNormalMoves(moves);
+    }
+
+    private boolean isInCheck(Board board, Side side) {
+        long kings = board.getBitboard(side, KING);
+        long occupied = board.getOccupied();
+        while (kings != 0) {
+            if (AttackTables.attackersTo(board, Long.numberOfTrailingZeros(kings), side.other(), occupied) != 0) {
+                return true;
+            }
+            kings &= kings - 1;
+        }
+        return false;
+    }
+
+    // A piece is pinned when it is the only piece between its king and an opposing slider that
+    // would otherwise attack the king.
+    private long pinnedPieces(Board board, Side side, int king) {
+        return blockers(board, king, side.other(), side);
+    }
+
+    // The pieces of the blocking side that are the only piece between the king and a slider of
+    // the sniping side.
+    private long blockers(Board board, int king, Side sniperSide, Side blockerSide) {
+        long queens = board.getBitboard(sniperSide, QUEEN);
+        long snipers = (AttackTables.rookAttacks(king, 0) & (board.getBitboard(sniperSide, ROOK) | queens))
+            | (AttackTables.bishopAttacks(king, 0) & (board.getBitboard(sniperSide, BISHOP) | queens));
+        long occupied = board.getOccupied();
+        long result = 0;
+        while (snipers != 0) {
+            long between = AttackTables.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(between) == 1) {
+                result |= between & board.getBitboard(blockerSide);
+            }
+            snipers &= snipers - 1;
+        }
+        return result;
+    }
+
+    // The squares the side's pieces other than the king may move to: anywhere when the king
+    // isn't in check, only to capture the checking piece or block its line when it is, and
+    // nowhere in double check.
+    private long checkMask(Board board, Side side, int king) {
+        long checkers = AttackTables.attackersTo(board, king, side.other(), board.getOccupied());
+        if (Long.bitCount(checkers) > 1) {
+            return 0;
+        }
+        return checkers == 0
+            ? ALL_SQUARES
+            : checkers | AttackTables.between(king, Long.numberOfTrailingZeros(checkers));
+    }
+
+    // The squares in toMask the king on the square can move to without being attacked.
+    private long safeKingTargets(Board board, Side side, int from, long toMask) {
+        // The king is taken off the board so that it can't hide behind itself from a slider.
+        long withoutKing = board.getOccupied() ^ (1L << from);
+        Side other = side.other();
+        long targets = pieceService.getTargets(side, KING, from, board) & toMask;
+        long safeTargets = 0;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (AttackTables.attackersTo(board, to, other, withoutKing) == 0) {
+                safeTargets |= 1L << to;
+            }
+        }
+        return safeTargets;
+    }
+
+    // Only moves to squares in toMask, or pawnToMask for pawns, are added. Without a list the
+    // moves are only counted. Returns the count, which is 0 when the moves are added.
+    private int addNormalMoves(MoveList moves, Board board, Side side, long fromMask, long toMask, long pawnToMask) {
+        long kings = board.getBitboard(side, KING);
+
+        // Boards without exactly one king for the side have nothing to protect.
+        int king = -1;
+        long checkMask = ALL_SQUARES;
+        long pinned = 0;
+        int count = 0;
+        if (Long.bitCount(kings) == 1) {
+            king = Long.numberOfTrailingZeros(kings);
+            checkMask = checkMask(board, side, king);
+            pinned = pinnedPieces(board, side, king);
+        }
+
+        for (PieceType type:NON_KING_TYPES) {
+            long pieces = board.getBitboard(side, type) & fromMask;
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                long targets = pieceService.getTargets(side, type, from, board) & checkMask
+                    & (type == PAWN ? pawnToMask : toMask);
+                if ((pinned & (1L << from)) != 0) {
+                    // A pinned piece can only move along the line through its king.
+                    targets &= AttackTables.line(king, from);
+                }
+                if (moves == null) {
+                    count += pieceService.countMoves(side, type, targets);
+                } else {
+                    pieceService.addMoves(moves, side, type, from, targets);
+                }
+            }
+        }
+
+        long kingSquares = kings & fromMask;
+        while (kingSquares != 0) {
+            int from = Long.numberOfTrailingZeros(kingSquares);
+            kingSquares &= kingSquares - 1;
+            long safeTargets = safeKingTargets(board, side, from, toMask);
+            if (moves == null) {
+                count += Long.bitCount(safeTargets);
+            } else {
+                pieceService.addMoves(moves, side, KING, from, safeTargets);
+            }
+        }
+        return count;
+    }
+
+    private void addEnPassantCaptures(MoveList moves, Position position) {
+        if (position.getEnPassantSquare().isEmpty()) {
+            return;
+        }
+        Square target = position.getEnPassantSquare().get();
+        Side side = position.getSideToMove();
+        Board board = position.getBoard();
+        long pawns = AttackTables.pawnAttacks(side.other(), target.getIndex()) & board.getBitboard(side, PAWN);
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            int move = EncodedMove.enPassant(from, target.getIndex(), side);
+            // The capture takes two pieces off the same rank, which the pin masks don't cover,
+            // so it is played to be tested.
+            position.makeMove(move);
+            boolean isLegal = !isInCheck(board, side);
+            position.unmakeMove();
+            if (isLegal) {
+                moves.add(move);
+            }
+        }
+    }
+
+    private void addCastles(MoveList moves, Position position) {
+        Side side = position.getSideToMove();
+        Board board = position.getBoard();
+        RankType rank = side == Side.WHITE ? RankType.ONE : RankType.EIGHT;
+        int king = new Square(FileType.E, rank).getIndex();
+        if ((board.getBitboard(side, KING) & (1L << king)) == 0) {
+            return;
+        }
+        long occupied = board.getOccupied();
+        for (CastleType type:CastleType.values()) {
+            int rook = new Square(type.getRookFileFrom(), rank).getIndex();
+            if (
+                !position.hasCastlingRight(side, type)
+                    || (board.getBitboard(side, ROOK) & (1L << rook)) == 0
+                    || (AttackTables.between(king, rook) & occupied) != 0
+            ) {
+                continue;
+            }
+            // The king may not castle out of, through or into check.
+            int kingTo = new Square(type.getKingFileTo(), rank).getIndex();
+            long kingPath = AttackTables.between(king, kingTo) | (1L << king) | (1L << kingTo);
+            if (!isAnyAttacked(board, kingPath, side.other(), occupied)) {
+                moves.add(EncodedMove.castle(side, type));
+            }
+        }
+    }
+
+    private boolean isAnyAttacked(Board board, long squares, Side bySide, long occupied) {
+        while (squares != 0) {
+            if (AttackTables.attackersTo(board, Long.numberOfTrailingZeros(squares), bySide, occupied) != 0) {
+                return true;
+            }
+            squares &= squares - 1;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,189 @@
+package org.dexenjaeger.chess.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.dexenjaeger.chess.config.Inject;
+import org.dexenjaeger.chess.models.GameStatus;
+import org.dexenjaeger.chess.models.board.PackedPosition;
+import org.dexenjaeger.chess.models.board.Position;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.models.moves.MoveList;
+import org.dexenjaeger.chess.models.moves.NormalMove;
+
+// Holds games that are being played, many at a time and from many threads. A Game keeps a tree
+// of snapshots with a whole board for every move, so a live game is kept in compact form instead:
+// its current position packed into a few longs, the moves played, and the keys of the positions
+// that can still repeat. Each game is locked on its own while a move is applied, so moves in
+// different games never wait for each other. Finished games stay until they are removed.
+public class LiveGameService {
+    private static final int INITIAL_MOVES = 16;
+    private static final int INITIAL_KEYS = 8;
+
+    private final GameService gameService;
+    private final LegalMoveService legalMoveService;
+    private final Map<Long, LiveGame> games = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Inject
+    public LiveGameService(GameService gameService, LegalMoveService legalMoveService) {
+        this.gameService = gameService;
+        this.legalMoveService = legalMoveService;
+    }
+
+    // The state of one game. Everything is guarded by the game's own monitor.
+    private static class LiveGame {
+        private final long[] position;
+        private int[] moves = new int[INITIAL_MOVES];
+        private int moveCount;
+        // The keys of the positions since the last capture or pawn move, the current one last.
+        private long[] keys = new long[INITIAL_KEYS];
+        private int keyCount;
+        private GameStatus status;
+
+        private LiveGame(Position position, GameStatus status) {
+            this.position = PackedPosition.pack(position);
+            this.keys[keyCount++] = position.getZobristKey();
+            this.status = status;
+        }
+    }
+
+    public long startGame() {
+        return startGame(gameService.startGame());
+    }
+
+    // Starts a live game from the current position of the game. The moves that led to it aren't
+    // kept.
+    public long startGame(Game game) {
+        Position position = gameService.toPosition(game);
+        long id = nextId.incrementAndGet();
+        games.put(id, new LiveGame(position, gameService.getGameStatus(position)));
+        return id;
+    }
+
+    public void removeGame(long id) {
+        games.remove(id);
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+    private LiveGame getGame(long id) {
+        LiveGame game = games.get(id);
+        if (game == null) {
+            throw new ServiceException(String.format("There is no live game with id %d.", id));
+        }
+        return game;
+    }
+
+    // Normal moves are checked on the board alone. Castles and en passant captures are rare
+    // enough that they are looked up among the generated moves, which knows the castling
+    // rights and the en passant square.
+    private boolean isLegal(Position position, Move move) {
+        if (move.getSide() != position.getSideToMove()) {
+            return false;
+        }
+        int encodedMove = EncodedMove.fromMove(move);
+        if (move instanceof NormalMove) {
+            return legalMoveService.isLegalNormalMove(position.getBoard(), encodedMove);
+        }
+        MoveList legalMoves = new MoveList();
+        legalMoveService.generateLegalMoves(position, legalMoves);
+        for (int i = 0; i < legalMoves.size(); i++) {
+            if (legalMoves.get(i) == encodedMove) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addMove(LiveGame game, int move) {
+        if (game.moveCount == game.moves.length) {
+            game.moves = Arrays.copyOf(game.moves, game.moveCount + (game.moveCount >> 1));
+        }
+        game.moves[game.moveCount++] = move;
+    }
+
+    // Adds the key of the new position and returns how many times it occurred before.
+    private static int addKey(LiveGame game, Position position) {
+        if (position.getFiftyMoveRuleCounter() == 0) {
+            game.keyCount = 0;
+        }
+        long key = position.getZobristKey();
+        int repetitions = 0;
+        for (int i = 0; i < game.keyCount; i++) {
+            if (game.keys[i] == key) {
+                repetitions++;
+            }
+        }
+        if (game.keyCount == game.keys.length) {
+            game.keys = Arrays.copyOf(game.keys, game.keyCount * 2);
+        }
+        game.keys[game.keyCount++] = key;
+        return repetitions;
+    }
+
+    // Applies the move to the game and returns the game's new status. Throws a ServiceException
+    // when the game is over or the move isn't legal, and leaves the game as it was.
+    public GameStatus applyMove(long id, Move move) {
+        LiveGame game = getGame(id);
+        synchronized (game) {
+            if (game.status.isCheckmate() || game.status == GameStatus.STALEMATE) {
+                throw new ServiceException(String.format("The live game %d is over: %s.", id, game.status));
+            }
+            Position position = PackedPosition.unpack(game.position);
+            if (!isLegal(position, move)) {
+                throw new ServiceException(String.format("The move %s is not available in live game %d.", move, id));
+            }
+            position.makeMove(move);
+            PackedPosition.pack(position, game.position);
+            addMove(game, EncodedMove.fromMove(move));
+            GameStatus status = gameService.getGameStatus(position);
+            // A position that occurs for the third time is a draw, as in GameService.
+            if (addKey(game, position) >= 2 && !status.isCheckmate()) {
+                status = GameStatus.STALEMATE;
+            }
+            game.status = status;
+            return status;
+        }
+    }
+
+    public GameStatus getStatus(long id) {
+        LiveGame game = getGame(id);
+        synchronized (game) {
+            return game.status;
+        }
+    }
+
+    public int getMoveCount(long id) {
+        LiveGame game = getGame(id);
+        synchronized (game) {
+            return game.moveCount;
+        }
+    }
+
+    public List<Move> getMoves(long id) {
+        LiveGame game = getGame(id);
+        List<Move> result = new ArrayList<>();
+        synchronized (game) {
+            for (int i = 0; i < game.moveCount; i++) {
+                result.add(EncodedMove.toMove(game.moves[i]));
+            }
+        }
+        return result;
+    }
+
+    // A copy of the game's current position, which can be searched or changed freely.
+    public Position getPosition(long id) {
+        LiveGame game = getGame(id);
+        synchronized (game) {
+            return PackedPosition.unpack(game.position);
+        }
+    }
+}
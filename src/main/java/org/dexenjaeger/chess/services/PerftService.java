@@ -0,0 +1,85 @@
+package org.dexenjaeger.chess.services;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.dexenjaeger.chess.config.Inject;
+import org.dexenjaeger.chess.models.analysis.PerftResult;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.moves.Move;
+
+// Counts the leaf nodes of the legal move tree to a fixed depth. Comparing the counts with known
+// values checks the move generator, and the timing gives every change to move generation a
+// nodes per second figure.
+@Slf4j
+public class PerftService {
+    private final FenService fenService;
+    private final GameService gameService;
+
+    @Inject
+    public PerftService(FenService fenService, GameService gameService) {
+        this.fenService = fenService;
+        this.gameService = gameService;
+    }
+
+    private long countNodes(Game game, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        Set<Move> moves = gameService.getAvailableMoves(game);
+        // The leaves don't need to be played to be counted.
+        if (depth == 1) {
+            return moves.size();
+        }
+        long nodes = 0;
+        for (Move move:moves) {
+            gameService.applyMove(game, move);
+            nodes += countNodes(game, depth - 1);
+            game.goToParentMove().removeLastAttemptedMove();
+        }
+        return nodes;
+    }
+
+    public PerftResult perft(String fen, int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException(String.format("The perft depth must be at least 0, not %d.", depth));
+        }
+        Game game = fenService.getGame(fen);
+        long start = System.nanoTime();
+        long nodes = countNodes(game, depth);
+        PerftResult result = new PerftResult(depth, nodes, Map.of(), System.nanoTime() - start);
+        log.info("{} from {}", result, fen);
+        return result;
+    }
+
+    // Like perft with a depth of at least 1, but also reports the node count below each move
+    // from the root so that a wrong total can be traced to the line that causes it.
+    public PerftResult divide(String fen, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException(String.format("The divide depth must be at least 1, not %d.", depth));
+        }
+        Game game = fenService.getGame(fen);
+        Map<Move, Long> nodesByMove = new LinkedHashMap<>();
+        long nodes = 0;
+        long start = System.nanoTime();
+        List<Move> moves = gameService.getAvailableMoves(game)
+            .stream()
+            .sorted(Comparator.comparing(Move::toString))
+            .collect(Collectors.toList());
+        for (Move move:moves) {
+            gameService.applyMove(game, move);
+            long moveNodes = countNodes(game, depth - 1);
+            game.goToParentMove().removeLastAttemptedMove();
+            nodesByMove.put(move, moveNodes);
+            nodes += moveNodes;
+        }
+        PerftResult result = new PerftResult(depth, nodes, nodesByMove, System.nanoTime() - start);
+        nodesByMove.forEach((move, count) -> log.info("{}: {}", move, count));
+        log.info("{} from {}", result, fen);
+        return result;
+    }
+}
@@ -280,9 +280,10 @@ public class PgnService {
                     () -> game.addTag(tagLabel, tagMatcher.group(2))
                 );
         }
+        // The long castle has to come first, or its first three characters match the short one.
         Matcher nextTokenMatcher = Pattern.compile(String.format(
             "(?:\\(|\\)|%s|%s|%s)",
-            CASTLE_SHORT, CASTLE_LONG, movePattern
+            CASTLE_LONG, CASTLE_SHORT, movePattern
         )).matcher(pgn);
         LinkedList<AtomicInteger> nestedVariationSizes = new LinkedList<>();
 
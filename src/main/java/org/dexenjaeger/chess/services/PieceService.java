@@ -1,105 +1,113 @@
 package org.dexenjaeger.chess.services;
 
 import static org.dexenjaeger.chess.models.pieces.PieceType.BISHOP;
-import static org.dexenjaeger.chess.models.pieces.PieceType.KING;
 import static org.dexenjaeger.chess.models.pieces.PieceType.KNIGHT;
 import static org.dexenjaeger.chess.models.pieces.PieceType.QUEEN;
 import static org.dexenjaeger.chess.models.pieces.PieceType.ROOK;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.board.Board;
 import org.dexenjaeger.chess.models.board.Square;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+import org.dexenjaeger.chess.models.moves.MoveList;
 import org.dexenjaeger.chess.models.moves.NormalMove;
 import org.dexenjaeger.chess.models.pieces.Piece;
-import org.dexenjaeger.chess.services.moves.CheckAvailability;
-import org.dexenjaeger.chess.services.moves.DirectionalMoveExtractor;
-import org.dexenjaeger.chess.services.moves.EvaluateOccupyingSide;
-import org.dexenjaeger.chess.services.moves.FixedMoveExtractor;
-import org.dexenjaeger.chess.services.moves.MoveExtractor;
-import org.dexenjaeger.chess.services.moves.PawnMoveExtractor;
-import org.dexenjaeger.chess.utils.Pair;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+import org.dexenjaeger.chess.services.moves.AttackTables;
 
 public class PieceService {
-    private static final List<Pair<Integer, Integer>> BISHOP_DIRECTIONS = List.of(
-        new Pair<>(-1, -1),
-        new Pair<>(-1, 1),
-        new Pair<>(1, -1),
-        new Pair<>(1, 1)
-    );
-    private static final List<Pair<Integer, Integer>> ROOK_DIRECTIONS = List.of(
-        new Pair<>(-1, 0),
-        new Pair<>(0, -1),
-        new Pair<>(0, 1),
-        new Pair<>(1, 0)
-    );
-    private static List<Pair<Integer, Integer>> queenDirections() {
-        return Stream.concat(
-            BISHOP_DIRECTIONS.stream(),
-            ROOK_DIRECTIONS.stream()
-        ).collect(Collectors.toList());
+    private static final List<PieceType> PROMOTION_CANDIDATES = List.of(ROOK, KNIGHT, BISHOP, QUEEN);
+    private static final long RANK_ONE = 0xFFL;
+    private static final long RANK_EIGHT = 0xFF00_0000_0000_0000L;
+
+    private long pawnPushes(Side side, int from, long occupied) {
+        int direction = side == Side.WHITE ? 8 : -8;
+        long single = 1L << (from + direction);
+        if ((occupied & single) != 0) {
+            return 0;
+        }
+        // A pawn on its starting rank may advance two squares when both are clear.
+        int startingRank = side == Side.WHITE ? 1 : 6;
+        if ((from >>> 3) == startingRank) {
+            long twice = 1L << (from + 2 * direction);
+            if ((occupied & twice) == 0) {
+                return single | twice;
+            }
+        }
+        return single;
     }
 
-    private MoveExtractor getMoveExtractor(Piece piece, EvaluateOccupyingSide evaluateOccupyingSide) {
-        CheckAvailability checkAvailability = new CheckAvailability(evaluateOccupyingSide, piece.getSide());
-        switch (piece.getType()) {
+    // The squares the piece on the starting square can move to by its movement rules, including
+    // captures. These moves may leave the moving side in check.
+    long getTargets(Side side, PieceType type, int from, Board board) {
+        long occupied = board.getOccupied();
+        long available = ~board.getBitboard(side);
+        switch (type) {
             case PAWN:
-                return new PawnMoveExtractor(
-                    piece.getSide(), evaluateOccupyingSide
-                );
+                return pawnPushes(side, from, occupied)
+                    | (AttackTables.pawnAttacks(side, from) & board.getBitboard(side.other()));
             case KNIGHT:
-                return new FixedMoveExtractor(
-                    piece.getSide(), KNIGHT,
-                    List.of(
-                        new Pair<>(-2, -1),
-                        new Pair<>(-2, 1),
-                        new Pair<>(-1, -2),
-                        new Pair<>(-1, 2),
-                        new Pair<>(2, -1),
-                        new Pair<>(2, 1),
-                        new Pair<>(1, -2),
-                        new Pair<>(1, 2)
-                    ), checkAvailability
-                );
+                return AttackTables.knightAttacks(from) & available;
             case KING:
-                return new FixedMoveExtractor(
-                    piece.getSide(), KING,
-                    queenDirections(), checkAvailability
-                );
+                return AttackTables.kingAttacks(from) & available;
             case BISHOP:
-                return new DirectionalMoveExtractor(
-                    piece.getSide(),
-                    BISHOP, BISHOP_DIRECTIONS,
-                    checkAvailability
-                );
+                return AttackTables.bishopAttacks(from, occupied) & available;
             case ROOK:
-                return new DirectionalMoveExtractor(
-                    piece.getSide(),
-                    ROOK, ROOK_DIRECTIONS,
-                    checkAvailability
-                );
+                return AttackTables.rookAttacks(from, occupied) & available;
             case QUEEN:
-                return new DirectionalMoveExtractor(
-                    piece.getSide(),
-                    QUEEN, queenDirections(),
-                    checkAvailability
-                );
+                return AttackTables.queenAttacks(from, occupied) & available;
             default:
-                throw new NotImplementedException(piece.getType());
+                throw new NotImplementedException(type);
         }
     }
 
-    public Set<NormalMove> getMoves(
-        Piece piece,
-        Square starting,
-        EvaluateOccupyingSide evaluateOccupyingSide
-    ) {
-        return getMoveExtractor(piece, evaluateOccupyingSide).moveSet(starting);
+    // Adds a move to each target square. A pawn reaching the last rank gets one move for each
+    // promotion candidate.
+    void addMoves(MoveList moves, Side side, PieceType type, int from, long targets) {
+        long promotionRank = side == Side.WHITE ? RANK_EIGHT : RANK_ONE;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (type == PieceType.PAWN && (promotionRank & (1L << to)) != 0) {
+                for (PieceType result:PROMOTION_CANDIDATES) {
+                    moves.add(EncodedMove.promotion(from, to, side, result));
+                }
+            } else {
+                moves.add(EncodedMove.normal(from, to, type, side));
+            }
+        }
     }
 
-    public boolean matchesPieceMovementRule(NormalMove move, EvaluateOccupyingSide evaluateOccupyingSide) {
-        return getMoveExtractor(move.getPiece(), evaluateOccupyingSide)
-            .canMove(move.getFrom(), move.getTo());
+    // The number of moves addMoves would add for the targets.
+    int countMoves(Side side, PieceType type, long targets) {
+        int count = Long.bitCount(targets);
+        if (type == PieceType.PAWN) {
+            long promotionRank = side == Side.WHITE ? RANK_EIGHT : RANK_ONE;
+            count += (PROMOTION_CANDIDATES.size() - 1) * Long.bitCount(targets & promotionRank);
+        }
+        return count;
+    }
+
+    public Set<NormalMove> getMoves(Piece piece, Square starting, Board board) {
+        int from = starting.getIndex();
+        MoveList moves = new MoveList();
+        addMoves(moves, piece.getSide(), piece.getType(), from, getTargets(piece.getSide(), piece.getType(), from, board));
+        Set<NormalMove> result = new HashSet<>();
+        for (int i = 0; i < moves.size(); i++) {
+            result.add((NormalMove) EncodedMove.toMove(moves.get(i)));
+        }
+        return result;
+    }
+
+    public boolean matchesPieceMovementRule(NormalMove move, Board board) {
+        Piece piece = move.getPiece();
+        int from = move.getFrom().getIndex();
+        if ((board.getBitboard(piece.getSide(), piece.getType()) & (1L << from)) == 0) {
+            return false;
+        }
+        return (getTargets(piece.getSide(), piece.getType(), from, board) & (1L << move.getTo().getIndex())) != 0;
     }
 }
@@ -1,20 +1,129 @@
 package org.dexenjaeger.chess.services;
 
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.dexenjaeger.chess.config.ExecutorType;
+import org.dexenjaeger.chess.models.analysis.CancellationToken;
 
+// Tasks passed to run and submit go to an executor of the configured ExecutorType. Searches go
+// to a work-stealing pool, which stays bounded so that CPU bound work doesn't oversubscribe the
+// cores. The threads are daemon threads, so a service provider that is never shut down doesn't
+// keep the JVM alive.
+//
+// Searches only stop when their cancellation token is cancelled, not when their thread is
+// interrupted, so every search takes its token from cancellationToken. Those tokens are children
+// of a root token that is cancelled when a shutdown runs out of time.
+@Slf4j
 public class ThreadService {
     private final ExecutorService executorService;
+    private final ForkJoinPool forkJoinPool;
+    private final CancellationToken rootToken = CancellationToken.create();
 
-    private ThreadService(ExecutorService executorService) {
+    private ThreadService(ExecutorService executorService, ForkJoinPool forkJoinPool) {
         this.executorService = executorService;
+        this.forkJoinPool = forkJoinPool;
     }
 
     public static ThreadService init(int nThreads) {
-        return new ThreadService(Executors.newFixedThreadPool(nThreads));
+        return init(nThreads, ExecutorType.PLATFORM);
+    }
+
+    public static ThreadService init(int nThreads, ExecutorType executorType) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "chess-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ForkJoinPool.ForkJoinWorkerThreadFactory forkJoinThreadFactory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setDaemon(true);
+            return thread;
+        };
+        // Without virtual threads, a pool that grows with the tasks would start a platform thread
+        // for each of them, so the fixed pool is used instead.
+        ExecutorService executorService = executorType == ExecutorType.VIRTUAL
+            ? newVirtualThreadPerTaskExecutor().orElseGet(() -> Executors.newFixedThreadPool(nThreads, threadFactory))
+            : Executors.newFixedThreadPool(nThreads, threadFactory);
+        return new ThreadService(executorService, new ForkJoinPool(nThreads, forkJoinThreadFactory, null, false));
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor is looked up by name, since the code is built for
+    // Java 17, where it doesn't exist yet.
+    private static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+        try {
+            return Optional.of((ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null));
+        } catch (ReflectiveOperationException e) {
+            log.warn("Virtual threads need Java 21. Using a fixed pool of platform threads.");
+            return Optional.empty();
+        }
     }
 
     public void run(Runnable runnable) {
         executorService.submit(runnable);
     }
+
+    public <T> Future<T> submit(Callable<T> callable) {
+        return executorService.submit(callable);
+    }
+
+    // Runs the task on the work-stealing pool and waits for its result. Subtasks forked by the
+    // task are stolen by idle threads, so every thread stays busy until the task is done.
+    public <T> T invoke(ForkJoinTask<T> task) {
+        return forkJoinPool.invoke(task);
+    }
+
+    // Runs the task on the work-stealing pool without waiting for it.
+    public <T> Future<T> submit(ForkJoinTask<T> task) {
+        return forkJoinPool.submit(task);
+    }
+
+    // A token for a search on these threads. It is cancelled along with the given token, and when
+    // the service is shut down with the search still running.
+    public CancellationToken cancellationToken(CancellationToken token) {
+        return rootToken.child(token);
+    }
+
+    public boolean isShutdown() {
+        return executorService.isShutdown() && forkJoinPool.isShutdown();
+    }
+
+    // Stops taking new work and waits up to the timeout for the work already started to finish.
+    // Whatever is still running after that is interrupted, and searches are cancelled. Returns
+    // whether everything finished in time.
+    public boolean shutdown(Duration timeout) {
+        executorService.shutdown();
+        forkJoinPool.shutdown();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            boolean finished = executorService.awaitTermination(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                && forkJoinPool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (!finished) {
+                log.warn("Threads were still running after {}. Interrupting them.", timeout);
+                rootToken.cancel();
+                executorService.shutdownNow();
+                forkJoinPool.shutdownNow();
+            }
+            return finished;
+        } catch (InterruptedException e) {
+            rootToken.cancel();
+            executorService.shutdownNow();
+            forkJoinPool.shutdownNow();
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
 }
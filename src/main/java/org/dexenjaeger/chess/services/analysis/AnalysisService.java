@@ -1,8 +1,13 @@
 package org.dexenjaeger.chess.services.analysis;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.Optional;
 import org.dexenjaeger.chess.config.Inject;
+import org.dexenjaeger.chess.models.analysis.CancellationToken;
+import org.dexenjaeger.chess.models.analysis.MateSolver;
+import org.dexenjaeger.chess.models.analysis.SearchLimits;
+import org.dexenjaeger.chess.models.analysis.SearchResult;
 import org.dexenjaeger.chess.models.board.Board;
 import org.dexenjaeger.chess.models.game.Game;
 import org.dexenjaeger.chess.models.game.GameSnapshot;
@@ -11,18 +16,46 @@ import org.dexenjaeger.chess.utils.TreeNode;
 public class AnalysisService {
     private final ScoreService scoreService;
     private final CheckmateService checkmateService;
+    private final ProofNumberService proofNumberService;
+    private final SearchService searchService;
+    private final MateSolver mateSolver;
 
     @Inject
     public AnalysisService(
         ScoreService scoreService,
-        CheckmateService checkmateService
+        CheckmateService checkmateService,
+        ProofNumberService proofNumberService,
+        SearchService searchService,
+        MateSolver mateSolver
     ) {
         this.scoreService = scoreService;
         this.checkmateService = checkmateService;
+        this.proofNumberService = proofNumberService;
+        this.searchService = searchService;
+        this.mateSolver = mateSolver;
     }
 
     public Optional<TreeNode<GameSnapshot>> findForcedCheckmate(Game game, int maxTurns) {
-        return checkmateService.findForcedCheckmate(game, maxTurns);
+        return findForcedCheckmate(game, maxTurns, CancellationToken.create());
+    }
+
+    // Returns empty when no mate is found before the timeout.
+    public Optional<TreeNode<GameSnapshot>> findForcedCheckmate(Game game, int maxTurns, Duration timeout) {
+        return findForcedCheckmate(game, maxTurns, CancellationToken.withTimeout(timeout));
+    }
+
+    // Returns empty when the token is cancelled before a mate is found.
+    public Optional<TreeNode<GameSnapshot>> findForcedCheckmate(
+        Game game, int maxTurns, CancellationToken cancellationToken
+    ) {
+        if (mateSolver == MateSolver.PROOF_NUMBER) {
+            return proofNumberService.findForcedCheckmate(game, maxTurns, cancellationToken);
+        }
+        return checkmateService.findForcedCheckmate(game, maxTurns, cancellationToken);
+    }
+
+    public SearchResult findBestMove(Game game, SearchLimits limits) {
+        return searchService.search(game, limits);
     }
 
     public int getMaterialScore(Board board) {
@@ -33,7 +66,13 @@ public class AnalysisService {
         return scoreService.getRelativePieceActivityScore(board);
     }
 
+    // The weighted score in pawns. getCentipawnScore gives the same score in hundredths of a pawn
+    // without BigDecimal arithmetic.
     public BigDecimal getScore(Board board) {
         return scoreService.getWeightedScore(board);
     }
+
+    public int getCentipawnScore(Board board) {
+        return scoreService.getWeightedCentipawnScore(board);
+    }
 }
@@ -1,141 +1,164 @@
 package org.dexenjaeger.chess.services.analysis;
 
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.dexenjaeger.chess.config.Inject;
 import org.dexenjaeger.chess.models.GameStatus;
 import org.dexenjaeger.chess.models.Side;
 import org.dexenjaeger.chess.models.analysis.AnalysisParameters;
+import org.dexenjaeger.chess.models.analysis.CancellationToken;
 import org.dexenjaeger.chess.models.analysis.ResultHolder;
-import org.dexenjaeger.chess.models.board.Square;
+import org.dexenjaeger.chess.models.analysis.TranspositionTable;
+import org.dexenjaeger.chess.models.board.Position;
 import org.dexenjaeger.chess.models.game.Game;
 import org.dexenjaeger.chess.models.game.GameSnapshot;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
 import org.dexenjaeger.chess.models.moves.Move;
-import org.dexenjaeger.chess.models.pieces.PieceType;
-import org.dexenjaeger.chess.services.BoardService;
+import org.dexenjaeger.chess.models.moves.MoveList;
 import org.dexenjaeger.chess.services.GameService;
+import org.dexenjaeger.chess.services.LegalMoveService;
 import org.dexenjaeger.chess.services.ThreadService;
 import org.dexenjaeger.chess.utils.TreeNode;
 
 @Slf4j
 public class CheckmateService {
+    private static final int TRANSPOSITION_TABLE_SIZE = 1 << 16;
+    private static final int SPLIT_MIN_TURNS = 2;
+    // The value stored in the transposition table is the mate distance in turns, or NO_MATE
+    // when there is no mate within the depth.
+    private static final int NO_MATE = 0;
+    // Mixed into the keys of searches for a black mate, so that they don't share entries with
+    // searches for a white mate from the same position.
+    private static final long BLACK_ATTACKING = 0x6A09_E667_F3BC_C908L;
+    // The repetition ply of a node with no line cut for repeating a position.
+    private static final int NO_REPETITION = Integer.MAX_VALUE;
+
     private final GameService gameService;
     private final ThreadService threadService;
-    private final ScoreService scoreService;
-    private final BoardService boardService;
+    private final LegalMoveService legalMoveService;
 
     @Inject
-    public CheckmateService(GameService gameService, ThreadService threadService, ScoreService scoreService, BoardService boardService) {
+    public CheckmateService(GameService gameService, ThreadService threadService, LegalMoveService legalMoveService) {
         this.gameService = gameService;
         this.threadService = threadService;
-        this.scoreService = scoreService;
-        this.boardService = boardService;
+        this.legalMoveService = legalMoveService;
     }
 
     public Optional<Move> findCheckmateInOne(Game game, Side targetSide) {
         if (gameService.currentSide(game) != targetSide) {
             return Optional.empty();
         }
-        return gameService.getAvailableMoves(game)
-            .stream()
-            .filter(move -> {
-                Game potentialGame = gameService.applyMove(gameService.detachGameState(game), move);
-                return gameService.getGameStatus(potentialGame).isCheckmate();
-            })
-            .findAny();
-    }
-
-    private Game mergeDescendents(Game game, Game gameToMerge) {
-        if (!game.getCurrentBoard().equals(gameToMerge.getCurrentBoard())) {
-            throw new RuntimeException(String.format(
-                "Game board %s doesn't match the game board to merge %s.",
-                game.getCurrentBoard(), gameToMerge.getCurrentBoard()
-            ));
-        }
-        for (Move move:gameToMerge.getAttemptedMoves()) {
-            if (!game.getAttemptedMoves().contains(move)) {
-                gameService.applyMove(game, move);
-            } else {
-                game.goToAttemptedMove(move);
+        Position position = gameService.toPosition(game);
+        for (Move move:gameService.getAvailableMoves(position)) {
+            position.makeMove(move);
+            boolean isCheckmate = gameService.getGameStatus(position).isCheckmate();
+            position.unmakeMove();
+            if (isCheckmate) {
+                return Optional.of(move);
             }
-            gameToMerge.goToAttemptedMove(move);
-            mergeDescendents(game, gameToMerge);
-            game.goToParentMove();
-            gameToMerge.goToParentMove();
         }
-        return game;
+        return Optional.empty();
     }
 
-    private int distanceToOpposingKing(Game g) {
-        Square opposingKingSquare = g.getCurrentBoard()
-            .getBySideAndType(gameService.currentSide(g), PieceType.KING)
-            .stream().findAny()
-            .orElseThrow();
-
-        return boardService.getTargetSquares(g.getPreviousMove())
-            .stream()
-            .mapToInt(s -> boardService.distance(s, opposingKingSquare))
-            .min()
-            .orElse(Integer.MAX_VALUE);
-    }
+    // What one task of a search works with. It keeps a move picker for each ply it reaches and
+    // reuses them from node to node, as SearchService does. A forked line gets pickers of its
+    // own, since it may run while the pickers of the task that forked it are still in use. The
+    // move history is shared by every task of the search. It isn't synchronized, so a race
+    // between tasks can lose a cutoff, which only costs some ordering.
+    private class LineSearch {
+        private final MoveHistory history;
+        private final List<MovePicker> movePickers = new ArrayList<>();
 
-    private int gameComparator(Game g1, Game g2) {
-        boolean isCheck1 = gameService.isInCheck(g1);
-        boolean isCheck2 = gameService.isInCheck(g2);
-        if (isCheck1 && !isCheck2) {
-            return 1;
-        }
-        if (isCheck2 && !isCheck1) {
-            return -1;
+        private LineSearch(MoveHistory history) {
+            this.history = history;
         }
 
-        int d1 = distanceToOpposingKing(g1);
-        int d2 = distanceToOpposingKing(g2);
-        if (d1 > d2) {
-            return 1;
+        private LineSearch forLine() {
+            return new LineSearch(history);
         }
-        if (d1 < d2) {
-            return -1;
-        }
-        return scoreService.getWeightedScore(g1.getCurrentBoard()).compareTo(scoreService.getWeightedScore(g2.getCurrentBoard()));
-    }
 
-    private List<Game> detachedGamesStartingWithForcing(Game game) {
-        Comparator<Game> comparator = this::gameComparator;
-        if (gameService.currentSide(game) == Side.WHITE) {
-            comparator = comparator.reversed();
+        // The starting side moves at the even plies, and tries checks first. The defending side
+        // tries the captures, then the killers and the rest of the quiet moves, so an escape
+        // among the first of them saves generating the others.
+        private MovePicker getMovePicker(int ply) {
+            while (movePickers.size() <= ply) {
+                movePickers.add(new MovePicker(legalMoveService, history, movePickers.size() % 2 == 0));
+            }
+            return movePickers.get(ply);
         }
+    }
 
-        return gameService.getAvailableMoves(game)
-            .stream()
-            .map(potentialMove -> gameService.applyMove(gameService.detachGameState(game), potentialMove))
-            .sorted(comparator)
-            .collect(Collectors.toList());
+    // The plies from the start of the search. Killers are only kept for the first MAX_PLY.
+    private static int ply(AnalysisParameters parameters, boolean isStartingSide) {
+        return isStartingSide ? 2 * parameters.getIterationNumber() : 2 * parameters.getIterationNumber() - 1;
     }
 
-    private boolean isLast(AtomicInteger counter) {
-        return counter.decrementAndGet() <= 0;
+    private static int killerPly(int ply) {
+        return Math.min(ply, SearchService.MAX_PLY - 1);
     }
 
+    // A search stops when a shorter line elsewhere leaves it no turns, or when the caller cancels
+    // the analysis.
     private boolean isCancelled(AnalysisParameters parameters) {
-        return parameters.getMaxTurns().get() <= parameters.getIterationNumber();
+        return parameters.getMaxTurns().get() <= parameters.getIterationNumber()
+            || parameters.getCancellationToken().isCancelled();
     }
 
     private Game getResult(Game original, Game candidate, boolean isStartingSide) {
         if (isStartingSide) {
-            return mergeDescendents(gameService.detachGameState(original), candidate);
+            return gameService.mergeDescendents(gameService.detachGameState(original), candidate);
         }
-        return mergeDescendents(original, candidate);
+        return gameService.mergeDescendents(original, candidate);
+    }
+
+    private long transpositionKey(AnalysisParameters parameters) {
+        long key = gameService.getZobristKey(parameters.getGame());
+        return parameters.getStartingSide() == Side.BLACK ? key ^ BLACK_ATTACKING : key;
     }
 
-    @SneakyThrows
-    private Optional<Game> findDownstreamCheckmate(AnalysisParameters parameters) {
+    // The number of moves the starting side has left to give mate.
+    private int remainingTurns(AnalysisParameters parameters) {
+        return parameters.getMaxTurns().get() - parameters.getIterationNumber();
+    }
+
+    // Adds a line found below the node to its result and, when the starting side is to move and
+    // the line is quicker than the max turns, lowers the max turns for every other line. Returns
+    // false when the defending side has a move that escapes mate, which settles the node.
+    private boolean addLine(
+        AnalysisParameters parameters, ResultHolder<Game> resultHolder,
+        Optional<Game> possibleCheckmateLine, boolean isStartingSide
+    ) {
+        if (possibleCheckmateLine.isEmpty()) {
+            return isStartingSide;
+        }
+        int moveCount = gameService.countMainlineMoves(possibleCheckmateLine.get());
+        if (resultHolder.set(
+            () -> getResult(parameters.getGame(), possibleCheckmateLine.get(), isStartingSide),
+            -1 * moveCount, !isStartingSide
+        ) && isStartingSide) {
+            int turns = moveCount + parameters.getIterationNumber();
+            if (turns < parameters.getMaxTurns().getAndAccumulate(turns, Math::min)) {
+                log.info("Found better line {}. Max turns are now {}.", possibleCheckmateLine.get(), parameters.getMaxTurns().get());
+            }
+        }
+        return true;
+    }
+
+    // The moves are searched young brothers wait style. The first move is the most likely to
+    // settle the node or to shorten the max turns for the rest, so it is searched on its own
+    // before the others are forked for idle threads to steal. Nodes with fewer than
+    // SPLIT_MIN_TURNS turns left are too small to be worth splitting and are searched in order,
+    // each move taken from the picker only once the line before it is done, so that an escape
+    // saves generating the moves after it.
+    // Every task stops once the shared max turns drop to its iteration. The lines of a split node
+    // share a child of its cancellation token, which is cancelled once the defending side has an
+    // escape, so the lines already running stop too. The node waits for them before returning,
+    // so no task of a search outlives it.
+    private Optional<Game> findDownstreamCheckmate(AnalysisParameters parameters, int bestMove, LineSearch search) {
         if (isCancelled(parameters)) {
             return Optional.empty();
         }
@@ -149,94 +172,169 @@ public class CheckmateService {
         } else {
             nextIterationNumber = parameters.getIterationNumber();
         }
+        boolean split = remainingTurns(parameters) >= SPLIT_MIN_TURNS;
+        CancellationToken lineToken = split
+            ? parameters.getCancellationToken().child()
+            : parameters.getCancellationToken();
         ResultHolder<Game> resultHolder = new ResultHolder<>();
-        CompletableFuture<Optional<Game>> futureResult = new CompletableFuture<>();
-        AtomicInteger linesRunningInParallel = new AtomicInteger();
-        for (Game potentialGame: detachedGamesStartingWithForcing(parameters.getGame())) {
-            if (parameters.getIterationNumber() == 0) {
-                linesRunningInParallel.incrementAndGet();
-                threadService.run(() -> {
-                    log.info("Exploring variations starting from {}", potentialGame.getPreviousMove());
-                    if (isCancelled(parameters)) {
-                        linesRunningInParallel.decrementAndGet();
-                        futureResult.complete(resultHolder.get());
-                        return;
-                    }
-                    Optional<Game> possibleCheckmateLine = findForcedCheckmateAndMerge(
-                        new AnalysisParameters(
-                            potentialGame, parameters.getStartingSide(), parameters.getMaxTurns(), nextIterationNumber
-                        )
-                    );
-                    if (possibleCheckmateLine.isPresent()) {
-                        int moveCount = gameService.countMainlineMoves(possibleCheckmateLine.get());
-                        if (resultHolder.set(
-                            () -> getResult(parameters.getGame(), possibleCheckmateLine.get(), isStartingSide),
-                            -1 * moveCount, !isStartingSide
-                        ) && isStartingSide) {
-                            if (moveCount + parameters.getIterationNumber() < parameters.getMaxTurns().get()) {
-                                parameters.getMaxTurns().set(moveCount + parameters.getIterationNumber());
-                                log.info("Found better line {}. Max turns are now {}.", possibleCheckmateLine.get(), parameters.getMaxTurns().get());
-                            } else if (moveCount + parameters.getIterationNumber() == parameters.getMaxTurns().get()) {
-                                log.info("Found line {}.", possibleCheckmateLine.get());
-                            }
-                        }
-                    } else if (!isStartingSide) {
-                        futureResult.complete(Optional.empty());
-                    }
-                    if (isLast(linesRunningInParallel)) {
-                        futureResult.complete(resultHolder.get());
-                    }
-                });
-                continue;
-            }
+        List<ForkJoinTask<Optional<Game>>> forkedLines = new ArrayList<>();
+        MoveList forkedMoves = new MoveList();
+        int ply = ply(parameters, isStartingSide);
+        MovePicker movePicker = search.getMovePicker(ply);
+        movePicker.reset(gameService.toPosition(parameters.getGame()), bestMove, killerPly(ply));
+        int i = 0;
+        for (int move = movePicker.next(); move != EncodedMove.NONE; move = movePicker.next(), i++) {
             if (isCancelled(parameters)) {
-                return resultHolder.get();
+                break;
             }
-            Optional<Game> possibleCheckmateLine = findForcedCheckmateAndMerge(
-                new AnalysisParameters(
-                    potentialGame, parameters.getStartingSide(), parameters.getMaxTurns(), nextIterationNumber
-                )
+            // Each line's game is only built once the line is reached.
+            Game potentialGame = gameService.applyMove(
+                gameService.detachGameState(parameters.getGame()), EncodedMove.toMove(move)
+            );
+            AnalysisParameters lineParameters = new AnalysisParameters(
+                potentialGame, parameters.getStartingSide(), parameters.getMaxTurns(), nextIterationNumber,
+                parameters.getTranspositionTable(), lineToken, parameters.getRepetitionPly()
             );
-            if (possibleCheckmateLine.isPresent()) {
-                int moveCount = gameService.countMainlineMoves(possibleCheckmateLine.get());
-                if (resultHolder.set(
-                    () -> getResult(parameters.getGame(), possibleCheckmateLine.get(), isStartingSide),
-                    -1 * moveCount, !isStartingSide
-                ) && isStartingSide && moveCount + parameters.getIterationNumber() < parameters.getMaxTurns().get()) {
-                    parameters.getMaxTurns().set(moveCount + parameters.getIterationNumber());
-                }
-            } else if (!isStartingSide) {
+            if (parameters.getIterationNumber() == 0) {
+                log.info("Exploring variations starting from {}", potentialGame.getPreviousMove());
+            }
+            if (split && i > 0) {
+                forkedLines.add(ForkJoinTask.adapt(
+                    () -> findForcedCheckmateAndMerge(lineParameters, search.forLine())
+                ).fork());
+                forkedMoves.add(move);
+                continue;
+            }
+            // Only the first line of a split node is searched here, so nothing has been forked.
+            if (!addLine(parameters, resultHolder, findForcedCheckmateAndMerge(lineParameters, search), isStartingSide)) {
+                addEscape(parameters, search, movePicker, move, ply);
                 return Optional.empty();
             }
         }
-        if (parameters.getIterationNumber() == 0) {
-            return futureResult.get();
+        for (int j = 0; j < forkedLines.size(); j++) {
+            if (!addLine(parameters, resultHolder, forkedLines.get(j).join(), isStartingSide)) {
+                addEscape(parameters, search, movePicker, forkedMoves.get(j), ply);
+                return stopLines(lineToken, forkedLines);
+            }
         }
         return resultHolder.get();
     }
 
-    private Optional<Game> findForcedCheckmateFromDetached(AnalysisParameters parameters) {
+    // A quiet defending move that escapes mate is likely to escape from the positions next to
+    // this one too, so it is tried early there.
+    private void addEscape(AnalysisParameters parameters, LineSearch search, MovePicker movePicker, int move, int ply) {
+        if (!movePicker.isTactical(move)) {
+            search.history.addCutoff(move, killerPly(ply), remainingTurns(parameters));
+        }
+    }
+
+    // The node is settled, so its other lines are no longer needed. The lines that haven't
+    // started are dropped, and the running ones see the cancelled token and return.
+    private Optional<Game> stopLines(CancellationToken lineToken, List<ForkJoinTask<Optional<Game>>> forkedLines) {
+        lineToken.cancel();
+        for (ForkJoinTask<Optional<Game>> forkedLine:forkedLines) {
+            forkedLine.cancel(false);
+            forkedLine.quietlyJoin();
+        }
+        return Optional.empty();
+    }
+
+    // Positions reached again by another move order are looked up in the transposition table.
+    // A position that was searched to at least the remaining turns without finding a mate is not
+    // searched again. An empty result is only stored when it is a proof: the search may stop
+    // early once another line shortens the max turns, but then the remaining turns shrink with
+    // it, and there is no mate within the turns remaining at the end. A line cut for repeating a
+    // position above the node depends on how the node was reached, so then nothing is proven.
+    private Optional<Game> findForcedCheckmateFromDetached(AnalysisParameters parameters, LineSearch search) {
         if (isCancelled(parameters)) {
             return Optional.empty();
         }
+        int ply = ply(parameters, gameService.currentSide(parameters.getGame()) == parameters.getStartingSide());
+        // A line that returns to a position it has been through, like a run of perpetual checks,
+        // is never the quickest mate, so it isn't searched again. The starting position is
+        // always searched, even when it repeats an earlier position in the game.
+        if (parameters.getIterationNumber() > 0 && gameService.getRepetitions(parameters.getGame()) > 0) {
+            parameters.getRepetitionPly().accumulateAndGet(
+                ply - gameService.getPliesSinceRepetition(parameters.getGame()), Math::min
+            );
+            return Optional.empty();
+        }
+        // Neither side can mate without the material for it, so the position isn't expanded.
+        if (parameters.getGame().getCurrentBoard().isInsufficientMaterial()) {
+            return Optional.empty();
+        }
+        TranspositionTable transpositionTable = parameters.getTranspositionTable();
+        long key = transpositionKey(parameters);
+        long entry = transpositionTable.probe(key);
+        if (
+            entry != TranspositionTable.MISS
+                && TranspositionTable.getValue(entry) == NO_MATE
+                && TranspositionTable.getDepth(entry) >= remainingTurns(parameters)
+        ) {
+            return Optional.empty();
+        }
+
         Game detachedGame = gameService.detachGameState(parameters.getGame());
-        return findCheckmateInOne(detachedGame, parameters.getStartingSide())
+        AtomicInteger repetitionPly = new AtomicInteger(NO_REPETITION);
+        int bestMove = entry == TranspositionTable.MISS ? EncodedMove.NONE : TranspositionTable.getMove(entry);
+        Optional<Game> result = findCheckmateInOne(detachedGame, parameters.getStartingSide())
             .map(checkmatingMove -> gameService
                 .applyMove(detachedGame, checkmatingMove)
                 .goToParentMove())
             .or(() -> findDownstreamCheckmate(new AnalysisParameters(
-                detachedGame, parameters.getStartingSide(), parameters.getMaxTurns(), parameters.getIterationNumber()
-            )));
+                detachedGame, parameters.getStartingSide(), parameters.getMaxTurns(), parameters.getIterationNumber(),
+                transpositionTable, parameters.getCancellationToken(), repetitionPly
+            ), bestMove, search));
+
+        // A search that was cut short proves nothing.
+        if (parameters.getCancellationToken().isCancelled()) {
+            return Optional.empty();
+        }
+        if (repetitionPly.get() != NO_REPETITION) {
+            parameters.getRepetitionPly().accumulateAndGet(repetitionPly.get(), Math::min);
+        }
+        int remainingTurns = remainingTurns(parameters);
+        if (result.isEmpty() && remainingTurns > 0 && repetitionPly.get() >= ply) {
+            transpositionTable.store(key, remainingTurns, NO_MATE, TranspositionTable.EXACT, EncodedMove.NONE);
+        } else if (result.isPresent() && gameService.currentSide(detachedGame) == parameters.getStartingSide()) {
+            Move firstMove = result.get().getGameNode().getChildren().getFirst().getValue().getMove();
+            transpositionTable.store(
+                key, Math.max(remainingTurns, 0), gameService.countMainlineMoves(result.get()),
+                TranspositionTable.EXACT, EncodedMove.fromMove(firstMove)
+            );
+        }
+        return result;
     }
 
-    private Optional<Game> findForcedCheckmateAndMerge(AnalysisParameters parameters) {
-        return findForcedCheckmateFromDetached(parameters)
-            .map(checkmateLine -> mergeDescendents(parameters.getGame(), checkmateLine).goToFirstMove());
+    private Optional<Game> findForcedCheckmateAndMerge(AnalysisParameters parameters, LineSearch search) {
+        return findForcedCheckmateFromDetached(parameters, search)
+            .map(checkmateLine -> gameService.mergeDescendents(parameters.getGame(), checkmateLine).goToFirstMove());
     }
 
     public Optional<TreeNode<GameSnapshot>> findForcedCheckmate(Game game, int maxTurns) {
-        return findForcedCheckmateAndMerge(new AnalysisParameters(
-            game, gameService.currentSide(game), new AtomicInteger(maxTurns), 0
-        )).map(Game::getGameNode);
+        return findForcedCheckmate(game, maxTurns, CancellationToken.create());
+    }
+
+    // Gives up and returns empty once the token is cancelled, since a partly searched line may
+    // miss a defence.
+    public Optional<TreeNode<GameSnapshot>> findForcedCheckmate(
+        Game game, int maxTurns, CancellationToken cancellationToken
+    ) {
+        CancellationToken searchToken = threadService.cancellationToken(cancellationToken);
+        AnalysisParameters parameters = new AnalysisParameters(
+            game, gameService.currentSide(game), new AtomicInteger(maxTurns), 0,
+            new TranspositionTable(TRANSPOSITION_TABLE_SIZE), searchToken, new AtomicInteger(NO_REPETITION)
+        );
+        Optional<Game> result = threadService.invoke(ForkJoinTask.adapt(
+            () -> findForcedCheckmateFromDetached(parameters, new LineSearch(new MoveHistory()))
+        ));
+        // The game is only changed once the search is known to have finished.
+        if (searchToken.isCancelled()) {
+            log.info("The search for a mate in {} was cancelled.", maxTurns);
+            return Optional.empty();
+        }
+        return result
+            .map(checkmateLine -> gameService.mergeDescendents(game, checkmateLine).goToFirstMove())
+            .map(Game::getGameNode);
     }
 }
@@ -0,0 +1,54 @@
+package org.dexenjaeger.chess.services.analysis;
+
+import java.util.Arrays;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+
+// What a search has learnt about which quiet moves refute others. Killer moves are the last two
+// quiet moves that caused a cutoff at each ply, since a move that refutes one line often refutes
+// its siblings too. The history score of a move grows with every cutoff it causes anywhere in the
+// tree, weighted by the depth left, so that moves which keep working are tried early everywhere.
+public class MoveHistory {
+    private static final int KILLERS_PER_PLY = 2;
+    // History scores are halved when one passes this, so that recent cutoffs count for more.
+    static final int MAX_HISTORY = 1 << 14;
+
+    private final int[][] killers = new int[SearchService.MAX_PLY][KILLERS_PER_PLY];
+    // Indexed by side, from square and to square. A castle counts as the king's move.
+    private final int[] history = new int[2 * 64 * 64];
+
+    private static int historyIndex(int move) {
+        return (EncodedMove.getSide(move).ordinal() * 64 + EncodedMove.getFrom(move)) * 64 + EncodedMove.getTo(move);
+    }
+
+    public boolean isKiller(int move, int ply) {
+        int[] plyKillers = killers[ply];
+        return plyKillers[0] == move || plyKillers[1] == move;
+    }
+
+    public int getHistory(int move) {
+        return history[historyIndex(move)];
+    }
+
+    // Records a quiet move that caused a cutoff with the given depth left.
+    public void addCutoff(int move, int ply, int depth) {
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != move) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = move;
+        }
+        int index = historyIndex(move);
+        history[index] += depth * depth;
+        if (history[index] > MAX_HISTORY) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] /= 2;
+            }
+        }
+    }
+
+    public void clear() {
+        for (int[] plyKillers:killers) {
+            Arrays.fill(plyKillers, EncodedMove.NONE);
+        }
+        Arrays.fill(history, 0);
+    }
+}
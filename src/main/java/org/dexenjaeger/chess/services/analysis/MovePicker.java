@@ -0,0 +1,265 @@
+package org.dexenjaeger.chess.services.analysis;
+
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.board.Board;
+import org.dexenjaeger.chess.models.board.PieceSquareTables;
+import org.dexenjaeger.chess.models.board.Position;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+import org.dexenjaeger.chess.models.moves.MoveList;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+import org.dexenjaeger.chess.services.LegalMoveService;
+
+// Hands out the legal moves of a position one at a time, most promising first, without making
+// any of them. The hash move comes first. Then come captures and promotions, the most valuable
+// victim first and, among those, the least valuable attacker (MVV-LVA). Then the killer moves,
+// then the other quiet moves by history score, breaking ties by how close the move lands to the
+// opposing king. The quiet moves are only generated once the captures run out, so a cutoff
+// among the captures saves generating them.
+//
+// A picker that puts checks first hands out the checking moves right after the hash move, which
+// suits a mate search. They are generated on their own by LegalMoveService.generateChecks, so the
+// captures and quiet moves are still only generated once the checks run out, and the checks are
+// skipped among them.
+//
+// For quiescence search a picker can be reset to hand out only the captures and promotions,
+// and optionally the quiet moves that give check, which are also taken from the checks.
+//
+// A picker is reused from node to node with reset, so a search keeps one for each ply.
+public class MovePicker {
+    private static final int MAX_MOVES = 256;
+    private static final int TACTICAL_SCORE = 1 << 24;
+    private static final int KILLER_SCORE = 1 << 20;
+    private static final PieceType[] VICTIM_TYPES = {
+        PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT, PieceType.PAWN
+    };
+
+    private static final int HASH_MOVE = 0;
+    private static final int CHECKS = 1;
+    private static final int TACTICAL = 2;
+    private static final int QUIET = 3;
+    private static final int QUIET_CHECKS = 4;
+    private static final int DONE = 5;
+
+    private final LegalMoveService legalMoveService;
+    private final MoveHistory history;
+    private final boolean checksFirst;
+    private final MoveList checkMoves = new MoveList(MAX_MOVES);
+    private final int[] checkScores = new int[MAX_MOVES];
+    private final MoveList tacticalMoves = new MoveList(MAX_MOVES);
+    private final int[] tacticalScores = new int[MAX_MOVES];
+    private final MoveList quietMoves = new MoveList(MAX_MOVES);
+    private final int[] quietScores = new int[MAX_MOVES];
+
+    private Position position;
+    private int hashMove;
+    private int ply;
+    private int stage;
+    // In quiescence, whether the quiet stage is skipped and whether its checks are handed out.
+    private boolean tacticalOnly;
+    private boolean quietChecks;
+    private boolean checksGenerated;
+    private boolean tacticalGenerated;
+    private boolean quietGenerated;
+    private int cursor;
+
+    public MovePicker(LegalMoveService legalMoveService, MoveHistory history, boolean checksFirst) {
+        this.legalMoveService = legalMoveService;
+        this.history = history;
+        this.checksFirst = checksFirst;
+    }
+
+    // Starts handing out the moves of the position at the given ply. The hash move may be
+    // EncodedMove.NONE, and is skipped when it isn't legal in the position.
+    public void reset(Position position, int hashMove, int ply) {
+        this.position = position;
+        this.hashMove = hashMove;
+        this.ply = ply;
+        this.stage = HASH_MOVE;
+        this.tacticalOnly = false;
+        this.quietChecks = false;
+        this.checksGenerated = false;
+        this.tacticalGenerated = false;
+        this.quietGenerated = false;
+        this.cursor = 0;
+        checkMoves.clear();
+        tacticalMoves.clear();
+        quietMoves.clear();
+    }
+
+    // Starts handing out the captures and promotions of the position, and the quiet checks when
+    // asked for.
+    public void resetQuiescence(Position position, int ply, boolean withChecks) {
+        reset(position, EncodedMove.NONE, ply);
+        this.stage = TACTICAL;
+        this.tacticalOnly = !withChecks;
+        this.quietChecks = withChecks;
+    }
+
+    // Returns EncodedMove.NONE once every move has been handed out. The position must be as it
+    // was at reset whenever this is called.
+    public int next() {
+        if (stage == HASH_MOVE) {
+            stage = checksFirst ? CHECKS : TACTICAL;
+            // The hash move is only trusted once it turns up among the generated moves. A quiet
+            // hash move that doesn't check costs generating the quiet moves early.
+            if (
+                hashMove != EncodedMove.NONE
+                    && (
+                        checksFirst && generateChecks().contains(hashMove)
+                            || (isTactical(hashMove) ? generateTactical() : generateQuiet()).contains(hashMove)
+                    )
+            ) {
+                return hashMove;
+            }
+        }
+        if (stage == CHECKS) {
+            int move = pickBest(generateChecks(), checkScores);
+            if (move != EncodedMove.NONE) {
+                return move;
+            }
+            stage = TACTICAL;
+            cursor = 0;
+        }
+        while (stage == TACTICAL) {
+            int move = pickBest(generateTactical(), tacticalScores);
+            if (move == EncodedMove.NONE) {
+                stage = tacticalOnly ? DONE : quietChecks ? QUIET_CHECKS : QUIET;
+                cursor = 0;
+            } else if (!checksFirst || !checkMoves.contains(move)) {
+                return move;
+            }
+        }
+        while (stage == QUIET) {
+            int move = pickBest(generateQuiet(), quietScores);
+            if (move == EncodedMove.NONE) {
+                stage = DONE;
+            } else if (!checksFirst || !checkMoves.contains(move)) {
+                return move;
+            }
+        }
+        // The captures among the checks were handed out with the other captures.
+        while (stage == QUIET_CHECKS) {
+            int move = pickBest(generateChecks(), checkScores);
+            if (move == EncodedMove.NONE) {
+                stage = DONE;
+            } else if (!isTactical(move)) {
+                return move;
+            }
+        }
+        return EncodedMove.NONE;
+    }
+
+    // Whether the move captures or promotes. Quiet moves that cause cutoffs are the ones worth
+    // remembering in the history.
+    public boolean isTactical(int move) {
+        if (EncodedMove.isPromotion(move) || EncodedMove.isEnPassant(move)) {
+            return true;
+        }
+        if (EncodedMove.isCastle(move)) {
+            return false;
+        }
+        Side side = EncodedMove.getSide(move);
+        return (position.getBoard().getBitboard(side.other()) & (1L << EncodedMove.getTo(move))) != 0;
+    }
+
+    private MoveList generateChecks() {
+        if (!checksGenerated) {
+            checksGenerated = true;
+            legalMoveService.generateChecks(position, checkMoves);
+            for (int i = 0; i < checkMoves.size(); i++) {
+                int move = checkMoves.get(i);
+                checkScores[i] = isTactical(move) ? scoreTactical(move) : scoreQuiet(move);
+            }
+        }
+        return checkMoves;
+    }
+
+    private MoveList generateTactical() {
+        if (!tacticalGenerated) {
+            tacticalGenerated = true;
+            legalMoveService.generateTacticalMoves(position, tacticalMoves);
+            for (int i = 0; i < tacticalMoves.size(); i++) {
+                tacticalScores[i] = scoreTactical(tacticalMoves.get(i));
+            }
+        }
+        return tacticalMoves;
+    }
+
+    private MoveList generateQuiet() {
+        if (!quietGenerated) {
+            quietGenerated = true;
+            legalMoveService.generateQuietMoves(position, quietMoves);
+            for (int i = 0; i < quietMoves.size(); i++) {
+                quietScores[i] = scoreQuiet(quietMoves.get(i));
+            }
+        }
+        return quietMoves;
+    }
+
+    // The material value in centipawns of the piece the move captures, or 0.
+    public int capturedValue(int move) {
+        if (EncodedMove.isEnPassant(move)) {
+            return PieceSquareTables.getMaterialValue(PieceType.PAWN);
+        }
+        if (EncodedMove.isCastle(move)) {
+            return 0;
+        }
+        Board board = position.getBoard();
+        Side other = EncodedMove.getSide(move).other();
+        long target = 1L << EncodedMove.getTo(move);
+        for (PieceType type:VICTIM_TYPES) {
+            if ((board.getBitboard(other, type) & target) != 0) {
+                return PieceSquareTables.getMaterialValue(type);
+            }
+        }
+        return 0;
+    }
+
+    private int scoreTactical(int move) {
+        int score = TACTICAL_SCORE + capturedValue(move) * 16 - EncodedMove.getPieceType(move).getValue();
+        if (EncodedMove.isPromotion(move)) {
+            score += PieceSquareTables.getMaterialValue(EncodedMove.getPromotionType(move)) * 16;
+        }
+        return score;
+    }
+
+    private int scoreQuiet(int move) {
+        if (history.isKiller(move, ply)) {
+            return KILLER_SCORE;
+        }
+        // History scores stay below MAX_HISTORY, so they fit above the distance to the king.
+        return history.getHistory(move) * 8 + 7 - distanceToOpposingKing(move);
+    }
+
+    private int distanceToOpposingKing(int move) {
+        long kings = position.getBoard().getBitboard(EncodedMove.getSide(move).other(), PieceType.KING);
+        if (kings == 0) {
+            return 7;
+        }
+        int king = Long.numberOfTrailingZeros(kings);
+        int to = EncodedMove.getTo(move);
+        return Math.max(Math.abs((king >>> 3) - (to >>> 3)), Math.abs((king & 7) - (to & 7)));
+    }
+
+    // Moves the best of the moves not yet handed out to the cursor and hands it out. The hash
+    // move was handed out already and is skipped.
+    private int pickBest(MoveList moves, int[] scores) {
+        while (cursor < moves.size()) {
+            int best = cursor;
+            for (int i = cursor + 1; i < moves.size(); i++) {
+                if (scores[i] > scores[best]) {
+                    best = i;
+                }
+            }
+            moves.swap(cursor, best);
+            int score = scores[cursor];
+            scores[cursor] = scores[best];
+            scores[best] = score;
+            int move = moves.get(cursor++);
+            if (move != hashMove) {
+                return move;
+            }
+        }
+        return EncodedMove.NONE;
+    }
+}
@@ -0,0 +1,263 @@
+package org.dexenjaeger.chess.services.analysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.dexenjaeger.chess.config.Inject;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.analysis.CancellationToken;
+import org.dexenjaeger.chess.models.board.Position;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.game.GameSnapshot;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+import org.dexenjaeger.chess.models.moves.MoveList;
+import org.dexenjaeger.chess.services.GameService;
+import org.dexenjaeger.chess.services.LegalMoveService;
+import org.dexenjaeger.chess.services.ThreadService;
+import org.dexenjaeger.chess.utils.TreeNode;
+
+// Finds forced mates with depth-first proof-number search (df-pn). Every node carries a proof
+// number, the least number of leaves that still have to be shown to be mates to prove it, and a
+// disproof number, the least number that have to be shown to escape. The search always expands
+// the child that is cheapest to settle and only returns to the parent once the child's numbers
+// pass thresholds set from its siblings. Nodes where the attacking side is to move need one
+// proven child, nodes for the defending side need them all.
+@Slf4j
+public class ProofNumberService {
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int PROOF = 0;
+    private static final int DISPROOF = 1;
+    // Mixed into the key once for each turn left, since the same position can be a mate with
+    // three turns left and not with two.
+    private static final long TURN_KEY = 0x9E37_79B9_7F4A_7C15L;
+    // The most nodes kept in a solve's table. Past that the node used longest ago is dropped and
+    // searched again if it is needed.
+    private static final int TABLE_SIZE = 1 << 18;
+
+    private final GameService gameService;
+    private final LegalMoveService legalMoveService;
+    private final ThreadService threadService;
+
+    @Inject
+    public ProofNumberService(GameService gameService, LegalMoveService legalMoveService, ThreadService threadService) {
+        this.gameService = gameService;
+        this.legalMoveService = legalMoveService;
+        this.threadService = threadService;
+    }
+
+    // Returns the shortest mate in at most maxTurns moves of the side to move. Like
+    // CheckmateService, the line is added to the game and the whole game is returned from its
+    // first move. At each move of the defending side the line follows the reply that holds out
+    // longest.
+    public Optional<TreeNode<GameSnapshot>> findForcedCheckmate(Game game, int maxTurns) {
+        return findForcedCheckmate(game, maxTurns, CancellationToken.create());
+    }
+
+    // Returns empty once the token is cancelled.
+    public Optional<TreeNode<GameSnapshot>> findForcedCheckmate(
+        Game game, int maxTurns, CancellationToken cancellationToken
+    ) {
+        CancellationToken searchToken = threadService.cancellationToken(cancellationToken);
+        Solver solver = new Solver(gameService.toPosition(game), searchToken);
+        // Proving each turn limit in turn finds the shortest mate. The proofs for the shorter
+        // limits are kept in the table, so the repeated work is small.
+        for (int turns = 1; turns <= maxTurns; turns++) {
+            boolean isProven = solver.isProven(turns);
+            if (searchToken.isCancelled()) {
+                log.info("The search for a mate in {} was cancelled after expanding {} nodes.", maxTurns, solver.nodes);
+                return Optional.empty();
+            }
+            if (isProven) {
+                // Building the line only looks at proven nodes, so it isn't cut short.
+                solver.cancellationToken = CancellationToken.create();
+                Game line = gameService.detachGameState(game);
+                solver.addLine(line, turns);
+                log.info("Found mate in {} after expanding {} nodes.", turns, solver.nodes);
+                return Optional.of(gameService.mergeDescendents(game, line).goToFirstMove().getGameNode());
+            }
+        }
+        log.info("No mate in {} after expanding {} nodes.", maxTurns, solver.nodes);
+        return Optional.empty();
+    }
+
+    // The state of a single solve, so that the service can run several at once.
+    private class Solver {
+        private final Position position;
+        private final Side attacker;
+        // The proof and disproof numbers of the nodes searched, by key, in the order they were
+        // last used.
+        private final Map<Long, int[]> table = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > TABLE_SIZE;
+            }
+        };
+        private CancellationToken cancellationToken;
+        private long nodes;
+
+        Solver(Position position, CancellationToken cancellationToken) {
+            this.position = position;
+            this.attacker = position.getSideToMove();
+            this.cancellationToken = cancellationToken;
+        }
+
+        // Turns counts the moves the attacking side has left, including the one it is about to
+        // make when it is to move.
+        private long key(int turns) {
+            return position.getZobristKey() + turns * TURN_KEY;
+        }
+
+        private int[] lookup(long key) {
+            int[] numbers = table.get(key);
+            return numbers == null ? new int[] {1, 1} : numbers;
+        }
+
+        private MoveList legalMoves() {
+            MoveList moves = new MoveList();
+            legalMoveService.generateLegalMoves(position, moves);
+            return moves;
+        }
+
+        boolean isProven(int turns) {
+            long key = key(turns);
+            int[] numbers = table.get(key);
+            if (numbers == null || (numbers[PROOF] != 0 && numbers[DISPROOF] != 0)) {
+                search(turns, INFINITY - 1, INFINITY - 1);
+                numbers = table.get(key);
+            }
+            return numbers != null && numbers[PROOF] == 0;
+        }
+
+        private void search(int turns, int proofThreshold, int disproofThreshold) {
+            nodes++;
+            long key = key(turns);
+            boolean attacking = position.getSideToMove() == attacker;
+            // Nothing below a position without mating material can be a mate.
+            if (position.getBoard().isInsufficientMaterial()) {
+                table.put(key, new int[] {INFINITY, 0});
+                return;
+            }
+            MoveList moves = legalMoves();
+            if (moves.isEmpty()) {
+                boolean isMate = !attacking && gameService.isInCheck(position);
+                table.put(key, isMate ? new int[] {0, INFINITY} : new int[] {INFINITY, 0});
+                return;
+            }
+            if (!attacking && turns == 0) {
+                table.put(key, new int[] {INFINITY, 0});
+                return;
+            }
+
+            int childTurns = attacking ? turns - 1 : turns;
+            long[] childKeys = new long[moves.size()];
+            for (int i = 0; i < moves.size(); i++) {
+                position.makeMove(moves.get(i));
+                childKeys[i] = key(childTurns);
+                position.unmakeMove();
+            }
+
+            while (true) {
+                // Where the attacking side moves, one proof is enough, so the proof number is
+                // the smallest among the children and the disproof number is their sum. Where
+                // the defending side moves it is the other way around.
+                int min = INFINITY;
+                int sum = 0;
+                int best = 0;
+                int secondMin = INFINITY;
+                int bestOther = 0;
+                for (int i = 0; i < childKeys.length; i++) {
+                    int[] numbers = lookup(childKeys[i]);
+                    int minNumber = attacking ? numbers[PROOF] : numbers[DISPROOF];
+                    int sumNumber = attacking ? numbers[DISPROOF] : numbers[PROOF];
+                    sum = Math.min(INFINITY, sum + sumNumber);
+                    if (minNumber < min) {
+                        secondMin = min;
+                        min = minNumber;
+                        best = i;
+                        bestOther = sumNumber;
+                    } else if (minNumber < secondMin) {
+                        secondMin = minNumber;
+                    }
+                }
+                int proof = attacking ? min : sum;
+                int disproof = attacking ? sum : min;
+                if (proof >= proofThreshold || disproof >= disproofThreshold || cancellationToken.isCancelled()) {
+                    table.put(key, new int[] {proof, disproof});
+                    return;
+                }
+
+                // The best child is searched until it is no longer the best, or until the
+                // parent passes its own thresholds.
+                int childProofThreshold;
+                int childDisproofThreshold;
+                if (attacking) {
+                    childProofThreshold = Math.min(proofThreshold, secondMin + 1);
+                    childDisproofThreshold = disproofThreshold - disproof + bestOther;
+                } else {
+                    childProofThreshold = proofThreshold - proof + bestOther;
+                    childDisproofThreshold = Math.min(disproofThreshold, secondMin + 1);
+                }
+                position.makeMove(moves.get(best));
+                search(childTurns, childProofThreshold, childDisproofThreshold);
+                position.unmakeMove();
+            }
+        }
+
+        // The fewest turns, up to the given number, in which the position is a forced mate.
+        private int mateDistance(int turns) {
+            for (int t = 1; t < turns; t++) {
+                if (isProven(t)) {
+                    return t;
+                }
+            }
+            return turns;
+        }
+
+        // Adds the proven mate to the game and the position, then takes the moves back off the
+        // position. The position must be proven for the given turns.
+        void addLine(Game game, int turns) {
+            MoveList moves = legalMoves();
+            if (moves.isEmpty()) {
+                return;
+            }
+            int chosen = EncodedMove.NONE;
+            int chosenTurns = 0;
+            if (position.getSideToMove() == attacker) {
+                // The quickest mate.
+                for (int t = 1; t <= turns && chosen == EncodedMove.NONE; t++) {
+                    for (int i = 0; i < moves.size(); i++) {
+                        position.makeMove(moves.get(i));
+                        boolean isProven = isProven(t - 1);
+                        position.unmakeMove();
+                        if (isProven) {
+                            chosen = moves.get(i);
+                            chosenTurns = t - 1;
+                            break;
+                        }
+                    }
+                }
+            } else {
+                // The reply that holds out longest.
+                chosenTurns = -1;
+                for (int i = 0; i < moves.size(); i++) {
+                    position.makeMove(moves.get(i));
+                    int distance = mateDistance(turns);
+                    position.unmakeMove();
+                    if (distance > chosenTurns) {
+                        chosen = moves.get(i);
+                        chosenTurns = distance;
+                    }
+                }
+            }
+            if (chosen == EncodedMove.NONE) {
+                throw new IllegalStateException(String.format("The position is not a mate in %d.", turns));
+            }
+            gameService.applyMove(game, EncodedMove.toMove(chosen));
+            position.makeMove(chosen);
+            addLine(game, chosenTurns);
+            position.unmakeMove();
+            game.goToParentMove();
+        }
+    }
+}
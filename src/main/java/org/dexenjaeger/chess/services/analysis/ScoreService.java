@@ -1,65 +1,106 @@
 package org.dexenjaeger.chess.services.analysis;
 
 import java.math.BigDecimal;
-import java.util.Optional;
-import java.util.Set;
 import org.dexenjaeger.chess.config.BindingTag;
 import org.dexenjaeger.chess.config.BindingTags;
 import org.dexenjaeger.chess.config.Inject;
 import org.dexenjaeger.chess.models.Side;
 import org.dexenjaeger.chess.models.board.Board;
-import org.dexenjaeger.chess.models.moves.Move;
-import org.dexenjaeger.chess.models.pieces.Piece;
 import org.dexenjaeger.chess.models.pieces.PieceType;
-import org.dexenjaeger.chess.services.BoardService;
+import org.dexenjaeger.chess.services.LegalMoveService;
+import org.dexenjaeger.chess.services.moves.AttackTables;
 
 public class ScoreService {
-    private final BoardService boardService;
-    private final BigDecimal piecesWeight;
-    private final BigDecimal activityWeight;
+    // The weights are kept in hundredths, so that weighted scores are whole centipawns.
+    private static final int WEIGHT_SCALE = 2;
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+
+    private final LegalMoveService legalMoveService;
+    private final int piecesWeight;
+    private final int activityWeight;
+    private final int mobilityWeight;
 
     @Inject
-    public ScoreService(BoardService boardService,
+    public ScoreService(LegalMoveService legalMoveService,
         @BindingTag(BindingTags.PIECES_WEIGHT) BigDecimal piecesWeight,
-        @BindingTag(BindingTags.ACTIVITY_WEIGHT) BigDecimal activityWeight) {
-        this.boardService = boardService;
-        this.piecesWeight = piecesWeight;
-        this.activityWeight = activityWeight;
+        @BindingTag(BindingTags.ACTIVITY_WEIGHT) BigDecimal activityWeight,
+        @BindingTag(BindingTags.MOBILITY_WEIGHT) Integer mobilityWeight) {
+        this.legalMoveService = legalMoveService;
+        this.piecesWeight = toFixedPoint(piecesWeight);
+        this.activityWeight = toFixedPoint(activityWeight);
+        this.mobilityWeight = mobilityWeight;
+    }
+
+    private static int toFixedPoint(BigDecimal weight) {
+        try {
+            return weight.movePointRight(WEIGHT_SCALE).intValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(String.format(
+                "The weight %s must be a multiple of 0.01.", weight
+            ), e);
+        }
     }
 
     private int getMaterialScore(Board board, Side side) {
-        return board.getBySide(side)
-            .stream()
-            .map(board::getPiece)
-            .flatMap(Optional::stream)
-            .map(Piece::getType)
-            .mapToInt(PieceType::getValue)
-            .sum();
+        int result = 0;
+        for (PieceType type:PIECE_TYPES) {
+            result += Long.bitCount(board.getBitboard(side, type)) * type.getValue();
+        }
+        return result;
     }
 
     int getRelativeMaterialScore(Board board) {
         return getMaterialScore(board, Side.WHITE) - getMaterialScore(board, Side.BLACK);
     }
-    private int getPieceActivityScore(Set<Move> moves) {
-        return moves.size();
-    }
+
     int getRelativePieceActivityScore(Board board) {
-        return getRelativePieceActivityScore(
-            boardService.getMovesBySide(board, Side.WHITE),
-            boardService.getMovesBySide(board, Side.BLACK)
-        );
+        return legalMoveService.countNormalMoves(board, Side.WHITE) - legalMoveService.countNormalMoves(board, Side.BLACK);
     }
 
-    int getRelativePieceActivityScore(Set<Move> whiteMoves, Set<Move> blackMoves) {
-        return getPieceActivityScore(whiteMoves) - getPieceActivityScore(blackMoves);
+    // The pieces weight applies to piece activity and the activity weight to material, as they
+    // always have. The result is in hundredths of a pawn from white's point of view.
+    int getWeightedCentipawnScore(Board board) {
+        return piecesWeight * getRelativePieceActivityScore(board) + activityWeight * getRelativeMaterialScore(board);
     }
 
+    // The weighted score in pawns, for callers that want a BigDecimal.
     BigDecimal getWeightedScore(Board board) {
-        Set<Move> whiteMoves = boardService.getMovesBySide(board, Side.WHITE);
-        Set<Move> blackMoves = boardService.getMovesBySide(board, Side.BLACK);
+        return BigDecimal.valueOf(getWeightedCentipawnScore(board), WEIGHT_SCALE);
+    }
+
+    // The number of squares the side's knights, bishops, rooks and queens attack that aren't
+    // held by its own pieces. These moves may be illegal, but counting them doesn't need move
+    // generation.
+    private int getMobility(Board board, Side side) {
+        long occupied = board.getOccupied();
+        long available = ~board.getBitboard(side);
+        int result = 0;
+        long knights = board.getBitboard(side, PieceType.KNIGHT);
+        while (knights != 0) {
+            result += Long.bitCount(AttackTables.knightAttacks(Long.numberOfTrailingZeros(knights)) & available);
+            knights &= knights - 1;
+        }
+        long diagonalSliders = board.getBitboard(side, PieceType.BISHOP) | board.getBitboard(side, PieceType.QUEEN);
+        while (diagonalSliders != 0) {
+            result += Long.bitCount(AttackTables.bishopAttacks(Long.numberOfTrailingZeros(diagonalSliders), occupied) & available);
+            diagonalSliders &= diagonalSliders - 1;
+        }
+        long straightSliders = board.getBitboard(side, PieceType.ROOK) | board.getBitboard(side, PieceType.QUEEN);
+        while (straightSliders != 0) {
+            result += Long.bitCount(AttackTables.rookAttacks(Long.numberOfTrailingZeros(straightSliders), occupied) & available);
+            straightSliders &= straightSliders - 1;
+        }
+        return result;
+    }
 
-        return piecesWeight
-            .multiply(BigDecimal.valueOf(getRelativePieceActivityScore(whiteMoves, blackMoves)))
-            .add(activityWeight.multiply(BigDecimal.valueOf(getRelativeMaterialScore(board))));
+    // The evaluation used by the search, in hundredths of a pawn from white's point of view. The
+    // material and piece placement part is kept up to date by the board as moves are made, so
+    // this takes constant time unless mobility is weighted.
+    int getCentipawnScore(Board board) {
+        int score = board.getPieceSquareScore();
+        if (mobilityWeight != 0) {
+            score += mobilityWeight * (getMobility(board, Side.WHITE) - getMobility(board, Side.BLACK));
+        }
+        return score;
     }
 }
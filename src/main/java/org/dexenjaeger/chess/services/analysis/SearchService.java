@@ -0,0 +1,396 @@
+package org.dexenjaeger.chess.services.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.dexenjaeger.chess.config.BindingTag;
+import org.dexenjaeger.chess.config.BindingTags;
+import org.dexenjaeger.chess.config.Inject;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.analysis.CancellationToken;
+import org.dexenjaeger.chess.models.analysis.SearchLimits;
+import org.dexenjaeger.chess.models.analysis.SearchMode;
+import org.dexenjaeger.chess.models.analysis.SearchResult;
+import org.dexenjaeger.chess.models.analysis.TranspositionTable;
+import org.dexenjaeger.chess.models.board.Position;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.services.GameService;
+import org.dexenjaeger.chess.services.LegalMoveService;
+import org.dexenjaeger.chess.services.ThreadService;
+
+// Picks a move with a negamax alpha-beta search, deepened one ply at a time until a limit is
+// reached. Each iteration tries the principal variation of the one before it first, then the
+// best move from the transposition table, which is what makes the shallow iterations pay for
+// themselves. The other moves are ordered by MovePicker.
+@Slf4j
+public class SearchService {
+    public static final int MAX_PLY = 64;
+    public static final int MATE_SCORE = 1_000_000;
+    // Scores beyond this bound, positive or negative, are mates.
+    public static final int MATE_BOUND = MATE_SCORE - MAX_PLY;
+    private static final int INFINITY = MATE_SCORE + 1;
+    // The clock is read once every this many nodes.
+    private static final int CHECK_INTERVAL = 1024;
+    private static final int TRANSPOSITION_TABLE_SIZE = 1 << 18;
+    // A capture that can't raise the score to within this of alpha, even winning the piece for
+    // nothing, isn't searched in quiescence.
+    private static final int DELTA_MARGIN = 200;
+
+    private final GameService gameService;
+    private final LegalMoveService legalMoveService;
+    private final ScoreService scoreService;
+    private final ThreadService threadService;
+    private final SearchMode searchMode;
+    private final int nThreads;
+
+    @Inject
+    public SearchService(
+        GameService gameService, LegalMoveService legalMoveService, ScoreService scoreService,
+        ThreadService threadService, SearchMode searchMode,
+        @BindingTag(BindingTags.N_THREADS) Integer nThreads
+    ) {
+        this.gameService = gameService;
+        this.legalMoveService = legalMoveService;
+        this.scoreService = scoreService;
+        this.threadService = threadService;
+        this.searchMode = searchMode;
+        this.nThreads = nThreads;
+    }
+
+    public SearchResult search(Game game, SearchLimits limits) {
+        return search(gameService.toPosition(game), limits);
+    }
+
+    // The position is left as it was found.
+    public SearchResult search(Position position, SearchLimits limits) {
+        TranspositionTable transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_SIZE);
+        AtomicBoolean stopHelpers = new AtomicBoolean();
+        if (searchMode == SearchMode.SINGLE_THREAD || nThreads <= 1) {
+            return new Search(position, limits, transpositionTable, 0, stopHelpers).run();
+        }
+        return searchInParallel(position, limits, transpositionTable, stopHelpers);
+    }
+
+    @SneakyThrows
+    private SearchResult searchInParallel(
+        Position position, SearchLimits limits, TranspositionTable transpositionTable, AtomicBoolean stopHelpers
+    ) {
+        List<Search> helpers = new ArrayList<>();
+        for (int id = 1; id < nThreads; id++) {
+            helpers.add(new Search(position.copy(), limits, transpositionTable, id, stopHelpers));
+        }
+        // The helpers are CPU bound, so they run on the bounded pool whatever the executor type.
+        List<Future<SearchResult>> helpersDone = new ArrayList<>();
+        for (Search helper:helpers) {
+            helpersDone.add(threadService.submit(ForkJoinTask.adapt(helper::run)));
+        }
+        Search main = new Search(position, limits, transpositionTable, 0, stopHelpers);
+        SearchResult result = main.run();
+        stopHelpers.set(true);
+        for (Future<SearchResult> helperDone:helpersDone) {
+            helperDone.get();
+        }
+
+        long nodes = main.nodes;
+        long quiescenceNodes = main.quiescenceNodes;
+        for (Search helper:helpers) {
+            nodes += helper.nodes;
+            quiescenceNodes += helper.quiescenceNodes;
+        }
+        return new SearchResult(
+            result.getDepth(), result.getScore(), result.getPrincipalVariation(), nodes, quiescenceNodes,
+            result.getElapsedNanos()
+        );
+    }
+
+    // Mate scores are stored relative to the node rather than the root, so that an entry means the
+    // same thing wherever the position comes up again.
+    private static int toTableScore(int score, int ply) {
+        if (score > MATE_BOUND) {
+            return score + ply;
+        }
+        return score < -MATE_BOUND ? score - ply : score;
+    }
+
+    private static int fromTableScore(int score, int ply) {
+        if (score > MATE_BOUND) {
+            return score - ply;
+        }
+        return score < -MATE_BOUND ? score + ply : score;
+    }
+
+    // The state of a single search thread, so that the service can run several at once.
+    private class Search {
+        private final Position position;
+        private final int maxDepth;
+        private final long maxNodes;
+        private final long deadline;
+        private final CancellationToken cancellationToken;
+        private final boolean quiescenceChecks;
+        private final long start = System.nanoTime();
+        private final TranspositionTable transpositionTable;
+        // Thread 0 is the main thread. The others are Lazy SMP helpers.
+        private final int id;
+        private final AtomicBoolean stopHelpers;
+        private final MovePicker[] movePickers = new MovePicker[MAX_PLY];
+        private final MoveHistory history = new MoveHistory();
+        // pvTable[ply] holds the best line found from the node at that ply, pvLength[ply] long.
+        private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+        private final int[] pvLength = new int[MAX_PLY];
+        private int[] previousPv = new int[0];
+        private boolean followPv;
+        private boolean canStop;
+        private boolean stopped;
+        private long nodes;
+        private long quiescenceNodes;
+
+        Search(
+            Position position, SearchLimits limits, TranspositionTable transpositionTable,
+            int id, AtomicBoolean stopHelpers
+        ) {
+            this.position = position;
+            this.maxDepth = Math.min(Math.max(limits.getMaxDepth(), 1), MAX_PLY - 1);
+            this.maxNodes = limits.getMaxNodes();
+            this.deadline = limits.getMaxTime() == null ? Long.MAX_VALUE : start + limits.getMaxTime().toNanos();
+            this.cancellationToken = threadService.cancellationToken(
+                limits.getCancellationToken() == null ? CancellationToken.create() : limits.getCancellationToken()
+            );
+            this.quiescenceChecks = limits.isQuiescenceChecks();
+            this.transpositionTable = transpositionTable;
+            this.id = id;
+            this.stopHelpers = stopHelpers;
+            // Helpers are only there to fill the table, so they can stop at any time.
+            this.canStop = id > 0;
+            for (int i = 0; i < movePickers.length; i++) {
+                movePickers[i] = new MovePicker(legalMoveService, history, false);
+            }
+        }
+
+        SearchResult run() {
+            SearchResult result = null;
+            for (
+                int depth = 1 + id % 2;
+                depth <= maxDepth && !(canStop && isOutOfTime());
+                depth++
+            ) {
+                followPv = true;
+                int score = negamax(depth, 0, -INFINITY, INFINITY);
+                if (stopped) {
+                    break;
+                }
+                previousPv = Arrays.copyOf(pvTable[0], pvLength[0]);
+                result = new SearchResult(
+                    depth, score, toMoves(previousPv), nodes, quiescenceNodes, System.nanoTime() - start
+                );
+                if (id == 0) {
+                    log.debug("{}", result);
+                }
+                // Later iterations can't take back a move that has no reply, or find a shorter mate.
+                canStop = true;
+                if (previousPv.length == 0 || Math.abs(score) > MATE_BOUND) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        private List<Move> toMoves(int[] moves) {
+            List<Move> result = new ArrayList<>(moves.length);
+            for (int move:moves) {
+                result.add(EncodedMove.toMove(move));
+            }
+            return result;
+        }
+
+        private boolean isOutOfTime() {
+            return System.nanoTime() >= deadline || cancellationToken.isCancelled();
+        }
+
+        private boolean shouldStop() {
+            if (
+                canStop && (
+                    nodes >= maxNodes
+                        || (nodes % CHECK_INTERVAL == 0 && (isOutOfTime() || (id > 0 && stopHelpers.get())))
+                )
+            ) {
+                stopped = true;
+            }
+            return stopped;
+        }
+
+        private int evaluate() {
+            int score = scoreService.getCentipawnScore(position.getBoard());
+            return position.getSideToMove() == Side.WHITE ? score : -score;
+        }
+
+        // Searches captures and promotions until the position is quiet, so that a leaf in the
+        // middle of an exchange isn't scored as if the exchange were over. The side to move can
+        // always stand pat on the static score instead of capturing, unless it is in check, when
+        // every move is searched. The quiet checks are only searched at the first ply, when the
+        // limits ask for them.
+        private int quiescence(int ply, int alpha, int beta, boolean isLeaf) {
+            pvLength[ply] = 0;
+            nodes++;
+            quiescenceNodes++;
+            if (shouldStop()) {
+                return 0;
+            }
+
+            boolean isInCheck = gameService.isInCheck(position);
+            int standPat = evaluate();
+            if (ply == MAX_PLY - 1) {
+                return standPat;
+            }
+            MovePicker movePicker = movePickers[ply];
+            int best = -INFINITY;
+            if (isInCheck) {
+                movePicker.reset(position, EncodedMove.NONE, ply);
+            } else {
+                if (standPat >= beta) {
+                    return standPat;
+                }
+                alpha = Math.max(alpha, standPat);
+                best = standPat;
+                movePicker.resetQuiescence(position, ply, isLeaf && quiescenceChecks);
+            }
+
+            boolean hasMoves = false;
+            for (int move = movePicker.next(); move != EncodedMove.NONE; move = movePicker.next()) {
+                hasMoves = true;
+                // Quiet checks aren't pruned, since what they win isn't material.
+                int capturedValue = movePicker.capturedValue(move);
+                if (
+                    !isInCheck
+                        && capturedValue > 0
+                        && !EncodedMove.isPromotion(move)
+                        && standPat + capturedValue + DELTA_MARGIN <= alpha
+                ) {
+                    continue;
+                }
+                position.makeMove(move);
+                int score = -quiescence(ply + 1, -beta, -alpha, false);
+                position.unmakeMove();
+                if (stopped) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    pvTable[ply][0] = move;
+                    System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+                    pvLength[ply] = pvLength[ply + 1] + 1;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+            if (isInCheck && !hasMoves) {
+                return -MATE_SCORE + ply;
+            }
+            // A leaf with no captures may have no moves at all. Finding the first legal move is
+            // enough to tell.
+            if (isLeaf && !hasMoves && !legalMoveService.hasAnyLegalMove(position)) {
+                return 0;
+            }
+            return best;
+        }
+
+        private int negamax(int depth, int ply, int alpha, int beta) {
+            pvLength[ply] = 0;
+            nodes++;
+            if (shouldStop()) {
+                return 0;
+            }
+            // A line that returns to a position it went through can be repeated into a draw, and
+            // any line that does better was already found from the first occurrence. Positions
+            // without the material to mate are draws however they are played.
+            if (ply > 0 && (position.isRepetition() || position.getBoard().isInsufficientMaterial())) {
+                return 0;
+            }
+
+            long key = position.getZobristKey();
+            long entry = transpositionTable.probe(key);
+            // The root always searches, so that it has a principal variation to return.
+            if (entry != TranspositionTable.MISS && ply > 0 && TranspositionTable.getDepth(entry) >= depth) {
+                int score = fromTableScore(TranspositionTable.getValue(entry), ply);
+                int bound = TranspositionTable.getBound(entry);
+                if (
+                    bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)
+                ) {
+                    return score;
+                }
+            }
+
+            if (depth == 0 || ply == MAX_PLY - 1) {
+                return quiescence(ply, alpha, beta, true);
+            }
+
+            // The move from the previous iteration's principal variation goes first while the
+            // search is still following it, otherwise the move from the table.
+            boolean onPv = followPv && ply < previousPv.length;
+            int hashMove = EncodedMove.NONE;
+            if (onPv) {
+                hashMove = previousPv[ply];
+            } else if (entry != TranspositionTable.MISS) {
+                hashMove = TranspositionTable.getMove(entry);
+            }
+            MovePicker movePicker = movePickers[ply];
+            movePicker.reset(position, hashMove, ply);
+
+            int originalAlpha = alpha;
+            int best = -INFINITY;
+            int bestMove = EncodedMove.NONE;
+            for (int move = movePicker.next(); move != EncodedMove.NONE; move = movePicker.next()) {
+                followPv = onPv && move == previousPv[ply];
+                boolean isTactical = movePicker.isTactical(move);
+                position.makeMove(move);
+                int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                position.unmakeMove();
+                if (stopped) {
+                    return 0;
+                }
+                if (score > best) {
+                    best = score;
+                    bestMove = move;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    pvTable[ply][0] = move;
+                    System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+                    pvLength[ply] = pvLength[ply + 1] + 1;
+                    if (alpha >= beta) {
+                        if (!isTactical) {
+                            history.addCutoff(move, ply, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+            if (bestMove == EncodedMove.NONE) {
+                return gameService.isInCheck(position) ? -MATE_SCORE + ply : 0;
+            }
+
+            int bound;
+            if (best <= originalAlpha) {
+                bound = TranspositionTable.UPPER_BOUND;
+            } else if (best >= beta) {
+                bound = TranspositionTable.LOWER_BOUND;
+            } else {
+                bound = TranspositionTable.EXACT;
+            }
+            transpositionTable.store(key, depth, toTableScore(best, ply), bound, bestMove);
+            return best;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package org.dexenjaeger.chess.services.moves;
+
+import java.util.SplittableRandom;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.board.Board;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+
+// Precomputed attack sets indexed by square (see Square.getIndex). Knight, king and pawn attacks
+// are plain lookups. Rook and bishop attacks use magic bitboards: the relevant blockers on the
+// piece's rays are multiplied by a per-square magic number and the top bits of the product index
+// a table of attack sets. All tables are built once when the class is initialized.
+public class AttackTables {
+    private static final int[][] KNIGHT_STEPS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+    private static final int[][] KING_STEPS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+    private static final int[][] ROOK_DIRECTIONS = {{-1, 0}, {0, -1}, {0, 1}, {1, 0}};
+    private static final int[][] BISHOP_DIRECTIONS = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}};
+    // The magic search is seeded so that every run builds the same tables.
+    private static final long MAGIC_SEED = 0x5EED_CAFE_F00DL;
+
+    private static final long[] KNIGHT_ATTACKS = stepAttacks(KNIGHT_STEPS);
+    private static final long[] KING_ATTACKS = stepAttacks(KING_STEPS);
+    private static final long[][] PAWN_ATTACKS = {
+        stepAttacks(new int[][] {{-1, 1}, {1, 1}}),
+        stepAttacks(new int[][] {{-1, -1}, {1, -1}})
+    };
+    private static final SlidingAttacks[] ROOK_ATTACKS;
+    private static final SlidingAttacks[] BISHOP_ATTACKS;
+    // BETWEEN[a][b] holds the squares strictly between a and b when they share a rank, file or
+    // diagonal, and is empty otherwise.
+    private static final long[][] BETWEEN = new long[64][64];
+    // LINE[a][b] holds the whole rank, file or diagonal through a and b, or nothing when they
+    // are not aligned.
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        SplittableRandom random = new SplittableRandom(MAGIC_SEED);
+        ROOK_ATTACKS = new SlidingAttacks[64];
+        BISHOP_ATTACKS = new SlidingAttacks[64];
+        for (int square = 0; square < 64; square++) {
+            ROOK_ATTACKS[square] = new SlidingAttacks(square, ROOK_DIRECTIONS, random);
+            BISHOP_ATTACKS[square] = new SlidingAttacks(square, BISHOP_DIRECTIONS, random);
+        }
+        for (int square = 0; square < 64; square++) {
+            fillBetween(square, ROOK_DIRECTIONS);
+            fillBetween(square, BISHOP_DIRECTIONS);
+            for (int other = 0; other < 64; other++) {
+                long ends = (1L << square) | (1L << other);
+                if ((rookAttacks(square, 0) & (1L << other)) != 0) {
+                    LINE[square][other] = (rookAttacks(square, 0) & rookAttacks(other, 0)) | ends;
+                } else if ((bishopAttacks(square, 0) & (1L << other)) != 0) {
+                    LINE[square][other] = (bishopAttacks(square, 0) & bishopAttacks(other, 0)) | ends;
+                }
+            }
+        }
+    }
+
+    private static void fillBetween(int square, int[][] directions) {
+        for (int[] direction:directions) {
+            long passed = 0;
+            int file = (square & 7) + direction[0];
+            int rank = (square >>> 3) + direction[1];
+            while (onBoard(file, rank)) {
+                int target = rank * 8 + file;
+                BETWEEN[square][target] = passed;
+                passed |= 1L << target;
+                file += direction[0];
+                rank += direction[1];
+            }
+        }
+    }
+
+    private static boolean onBoard(int file, int rank) {
+        return file >= 0 && file < 8 && rank >= 0 && rank < 8;
+    }
+
+    private static long[] stepAttacks(int[][] steps) {
+        long[] result = new long[64];
+        for (int square = 0; square < 64; square++) {
+            for (int[] step:steps) {
+                int file = (square & 7) + step[0];
+                int rank = (square >>> 3) + step[1];
+                if (onBoard(file, rank)) {
+                    result[square] |= 1L << (rank * 8 + file);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Walks each ray from the square until it leaves the board or hits a blocker. The blocker's
+    // square is included in the result.
+    private static long rayAttacks(int square, long occupied, int[][] directions) {
+        long result = 0;
+        for (int[] direction:directions) {
+            int file = (square & 7) + direction[0];
+            int rank = (square >>> 3) + direction[1];
+            while (onBoard(file, rank)) {
+                long bit = 1L << (rank * 8 + file);
+                result |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                file += direction[0];
+                rank += direction[1];
+            }
+        }
+        return result;
+    }
+
+    // The squares on the rays from the square that can block it. The last square of each ray is
+    // left out because a piece there never hides anything behind it.
+    private static long blockerMask(int square, int[][] directions) {
+        long result = 0;
+        for (int[] direction:directions) {
+            int file = (square & 7) + direction[0];
+            int rank = (square >>> 3) + direction[1];
+            while (onBoard(file + direction[0], rank + direction[1])) {
+                result |= 1L << (rank * 8 + file);
+                file += direction[0];
+                rank += direction[1];
+            }
+        }
+        return result;
+    }
+
+    private static class SlidingAttacks {
+        private final long mask;
+        private final long magic;
+        private final int shift;
+        private final long[] attacks;
+
+        SlidingAttacks(int square, int[][] directions, SplittableRandom random) {
+            mask = blockerMask(square, directions);
+            int bits = Long.bitCount(mask);
+            shift = 64 - bits;
+
+            // Enumerate every subset of the blocker mask along with its attack set.
+            long[] blockers = new long[1 << bits];
+            long[] expected = new long[1 << bits];
+            long subset = 0;
+            int count = 0;
+            do {
+                blockers[count] = subset;
+                expected[count] = rayAttacks(square, subset, directions);
+                count++;
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+
+            attacks = new long[1 << bits];
+            int[] usedInAttempt = new int[1 << bits];
+            int attempt = 0;
+            long candidate;
+            while (true) {
+                attempt++;
+                // Magics with few set bits tend to work, so combine several random numbers.
+                candidate = random.nextLong() & random.nextLong() & random.nextLong();
+                if (Long.bitCount((mask * candidate) & 0xFF00_0000_0000_0000L) < 6) {
+                    continue;
+                }
+                boolean collision = false;
+                for (int i = 0; i < count && !collision; i++) {
+                    int index = (int) ((blockers[i] * candidate) >>> shift);
+                    if (usedInAttempt[index] != attempt) {
+                        usedInAttempt[index] = attempt;
+                        attacks[index] = expected[i];
+                    } else if (attacks[index] != expected[i]) {
+                        collision = true;
+                    }
+                }
+                if (!collision) {
+                    break;
+                }
+            }
+            magic = candidate;
+        }
+
+        long get(long occupied) {
+            return attacks[(int) (((occupied & mask) * magic) >>> shift)];
+        }
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    // The squares a pawn of the given side on the square attacks.
+    public static long pawnAttacks(Side side, int square) {
+        return PAWN_ATTACKS[side.ordinal()][square];
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_ATTACKS[square].get(occupied);
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_ATTACKS[square].get(occupied);
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    // The pieces of the given side that attack the square when the board's occupancy is replaced
+    // by the given one. Passing an occupancy without the defending king lets king moves be tested
+    // against attacks along the line the king is moving away on.
+    public static long attackersTo(Board board, int square, Side bySide, long occupied) {
+        long queens = board.getBitboard(bySide, PieceType.QUEEN);
+        return (pawnAttacks(bySide.other(), square) & board.getBitboard(bySide, PieceType.PAWN))
+            | (knightAttacks(square) & board.getBitboard(bySide, PieceType.KNIGHT))
+            | (kingAttacks(square) & board.getBitboard(bySide, PieceType.KING))
+            | (rookAttacks(square, occupied) & (board.getBitboard(bySide, PieceType.ROOK) | queens))
+            | (bishopAttacks(square, occupied) & (board.getBitboard(bySide, PieceType.BISHOP) | queens));
+    }
+}
@@ -1,5 +0,0 @@
-package org.dexenjaeger.chess.utils;
-
-public enum DirectionIterableTestResult {
-    CONTINUE, LAST, UNAVAILABLE
-}
@@ -0,0 +1,48 @@
+package org.dexenjaeger.chess.models.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class CancellationTokenTest {
+    @Test
+    void child_isCancelledWithParent() {
+        CancellationToken parent = CancellationToken.create();
+        CancellationToken child = parent.child();
+        CancellationToken grandchild = child.child();
+        assertFalse(grandchild.isCancelled());
+        parent.cancel();
+        assertTrue(child.isCancelled());
+        assertTrue(grandchild.isCancelled());
+    }
+
+    @Test
+    void child_cancelledAlone() {
+        CancellationToken parent = CancellationToken.create();
+        CancellationToken child = parent.child();
+        CancellationToken sibling = parent.child();
+        child.cancel();
+        assertTrue(child.isCancelled());
+        assertFalse(parent.isCancelled());
+        assertFalse(sibling.isCancelled());
+    }
+
+    @Test
+    void child_seesParentDeadline() {
+        assertTrue(CancellationToken.withTimeout(Duration.ZERO).child().isCancelled());
+    }
+
+    @Test
+    void child_isCancelledWithEitherParent() {
+        CancellationToken parent = CancellationToken.create();
+        CancellationToken otherParent = CancellationToken.create();
+        CancellationToken child = parent.child(otherParent);
+        assertFalse(child.isCancelled());
+        otherParent.cancel();
+        assertTrue(child.isCancelled());
+        assertFalse(parent.isCancelled());
+        assertTrue(parent.child(CancellationToken.withTimeout(Duration.ZERO)).isCancelled());
+    }
+}
@@ -0,0 +1,58 @@
+package org.dexenjaeger.chess.models.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.moves.CastleType;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+import org.junit.jupiter.api.Test;
+
+class TranspositionTableTest {
+    private final TranspositionTable table = new TranspositionTable(1000);
+
+    @Test
+    void size_roundsDownToPowerOfTwo() {
+        assertEquals(512, table.size());
+    }
+
+    @Test
+    void storeAndProbe() {
+        int move = EncodedMove.castle(Side.BLACK, CastleType.LONG);
+        table.store(0x1234_5678_9ABCL, 3, -999_990, TranspositionTable.UPPER_BOUND, move);
+
+        long entry = table.probe(0x1234_5678_9ABCL);
+        assertEquals(3, TranspositionTable.getDepth(entry));
+        assertEquals(-999_990, TranspositionTable.getValue(entry));
+        assertEquals(TranspositionTable.UPPER_BOUND, TranspositionTable.getBound(entry));
+        assertEquals(move, TranspositionTable.getMove(entry));
+
+        // Same slot, different key.
+        assertEquals(TranspositionTable.MISS, table.probe(0x1234_5678_9ABCL + table.size()));
+        assertEquals(TranspositionTable.MISS, table.probe(0x1234_5678_9ABDL));
+    }
+
+    @Test
+    void store_prefersDeeperEntries() {
+        long key = 42;
+        long otherKey = key + table.size();
+        table.store(key, 4, 0, TranspositionTable.EXACT, EncodedMove.NONE);
+        table.store(otherKey, 3, 1, TranspositionTable.EXACT, EncodedMove.NONE);
+        assertEquals(TranspositionTable.MISS, table.probe(otherKey));
+        assertEquals(0, TranspositionTable.getValue(table.probe(key)));
+
+        table.store(otherKey, 4, 1, TranspositionTable.LOWER_BOUND, EncodedMove.NONE);
+        assertEquals(TranspositionTable.MISS, table.probe(key));
+        assertEquals(1, TranspositionTable.getValue(table.probe(otherKey)));
+
+        table.clear();
+        assertEquals(TranspositionTable.MISS, table.probe(otherKey));
+    }
+
+    @Test
+    void store_clampsDepthToMax() {
+        table.store(7, TranspositionTable.MAX_DEPTH + 45, 2, TranspositionTable.EXACT, EncodedMove.NONE);
+        long entry = table.probe(7);
+        assertEquals(TranspositionTable.MAX_DEPTH, TranspositionTable.getDepth(entry));
+        assertEquals(2, TranspositionTable.getValue(entry));
+    }
+}
@@ -0,0 +1,88 @@
+package org.dexenjaeger.chess.models.board;
+
+import static org.dexenjaeger.chess.models.Side.BLACK;
+import static org.dexenjaeger.chess.models.Side.WHITE;
+import static org.dexenjaeger.chess.models.pieces.PieceType.KNIGHT;
+import static org.dexenjaeger.chess.models.pieces.PieceType.PAWN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Optional;
+import java.util.Set;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.moves.SimpleMove;
+import org.dexenjaeger.chess.models.pieces.Piece;
+import org.dexenjaeger.chess.services.BoardService;
+import org.dexenjaeger.chess.services.FenService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class BoardTest {
+    private final FenService fenService = new ServiceProvider().getInstance(FenService.class);
+
+    private static Square square(FileType file, RankType rank) {
+        return new Square(file, rank);
+    }
+
+    @Test
+    void squareIndex_roundTrips() {
+        for (int index = 0; index < 64; index++) {
+            assertEquals(index, Square.fromIndex(index).getIndex());
+        }
+        assertEquals(square(FileType.A, RankType.ONE), Square.fromIndex(0));
+        assertEquals(square(FileType.H, RankType.EIGHT), Square.fromIndex(63));
+    }
+
+    @Test
+    void getBitboard_standardBoard() {
+        Board board = BoardService.standardGameBoard();
+        assertEquals(0xFF00L, board.getBitboard(WHITE, PAWN));
+        assertEquals(0xFFFFL, board.getBitboard(WHITE));
+        assertEquals(0xFFFF_0000_0000_0000L, board.getBitboard(BLACK));
+        assertEquals(0xFFFF_0000_0000_FFFFL, board.getOccupied());
+    }
+
+    @Test
+    void movePiece_capturesOccupyingPiece() {
+        Board board = BoardService.standardGameBoard()
+            .movePiece(new SimpleMove(square(FileType.G, RankType.ONE), square(FileType.F, RankType.THREE), KNIGHT, WHITE))
+            .movePiece(new SimpleMove(square(FileType.F, RankType.THREE), square(FileType.E, RankType.SEVEN), KNIGHT, WHITE));
+
+        assertEquals(Optional.of(new Piece(WHITE, KNIGHT)), board.getPiece(square(FileType.E, RankType.SEVEN)));
+        assertEquals(7, board.getBySideAndType(BLACK, PAWN).size());
+        assertEquals(15, board.getBySide(BLACK).size());
+        assertEquals(Set.of(square(FileType.B, RankType.ONE), square(FileType.E, RankType.SEVEN)), board.getBySideAndType(WHITE, KNIGHT));
+        assertEquals(7, board.getPieceCount(BLACK, PAWN));
+        assertEquals(2, board.getPieceCount(WHITE, KNIGHT));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "4k3/8/8/8/8/8/8/4K3 w - - 0 1,true",
+        "4k3/8/8/8/8/8/8/4KN2 w - - 0 1,true",
+        "4kb2/8/8/8/8/8/8/4K3 w - - 0 1,true",
+        // Bishops on squares of one colour, whichever side they belong to.
+        "4k3/8/8/8/8/8/8/2B1KB2 w - - 0 1,false",
+        "2b1k3/8/8/8/8/8/8/4KB2 w - - 0 1,true",
+        "2b1k3/8/8/8/8/8/8/2B1K3 w - - 0 1,false",
+        "4k3/8/8/8/8/8/8/3NKN2 w - - 0 1,false",
+        "4kn2/8/8/8/8/8/8/4KN2 w - - 0 1,false",
+        "4k3/8/8/8/8/8/4P3/4K3 w - - 0 1,false",
+        "4k3/8/8/8/8/8/8/4KR2 w - - 0 1,false",
+    })
+    void isInsufficientMaterial(String fen, boolean expected) {
+        assertEquals(expected, fenService.getGame(fen).getCurrentBoard().isInsufficientMaterial());
+    }
+
+    @Test
+    void equals_samePositionByDifferentMoveOrders() {
+        Board start = BoardService.standardGameBoard();
+        SimpleMove knightMove = new SimpleMove(square(FileType.G, RankType.ONE), square(FileType.F, RankType.THREE), KNIGHT, WHITE);
+        SimpleMove pawnMove = new SimpleMove(square(FileType.E, RankType.TWO), square(FileType.E, RankType.FOUR), PAWN, WHITE);
+
+        Board first = start.movePiece(knightMove).movePiece(pawnMove);
+        Board second = start.movePiece(pawnMove).movePiece(knightMove);
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+    }
+}
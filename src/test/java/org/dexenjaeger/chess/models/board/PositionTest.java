@@ -0,0 +1,219 @@
+package org.dexenjaeger.chess.models.board;
+
+import static org.dexenjaeger.chess.models.Side.BLACK;
+import static org.dexenjaeger.chess.models.Side.WHITE;
+import static org.dexenjaeger.chess.models.pieces.PieceType.KING;
+import static org.dexenjaeger.chess.models.pieces.PieceType.KNIGHT;
+import static org.dexenjaeger.chess.models.pieces.PieceType.PAWN;
+import static org.dexenjaeger.chess.models.pieces.PieceType.QUEEN;
+import static org.dexenjaeger.chess.models.pieces.PieceType.ROOK;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Optional;
+import java.util.Set;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.moves.Castle;
+import org.dexenjaeger.chess.models.moves.CastleType;
+import org.dexenjaeger.chess.models.moves.EnPassantCapture;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.models.moves.PromotionMove;
+import org.dexenjaeger.chess.models.moves.SimpleMove;
+import org.dexenjaeger.chess.models.pieces.Piece;
+import org.dexenjaeger.chess.services.FenService;
+import org.dexenjaeger.chess.services.GameService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class PositionTest {
+    private final ServiceProvider serviceProvider = new ServiceProvider();
+    private final FenService fenService = serviceProvider.getInstance(FenService.class);
+    private final GameService gameService = serviceProvider.getInstance(GameService.class);
+
+    private static Square square(FileType file, RankType rank) {
+        return new Square(file, rank);
+    }
+
+    private Position position(String fen) {
+        Game game = fenService.getGame(fen);
+        return gameService.toPosition(game);
+    }
+
+    @Test
+    void makeAndUnmake_restoresEverything() {
+        Position position = position("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 20");
+        Board initialBoard = position.toBoard();
+        Set<Castle> initialRights = position.getCastlingRights();
+
+        Move[] moves = {
+            new EnPassantCapture(WHITE, FileType.E, FileType.D),
+            new Castle(BLACK, CastleType.SHORT),
+            new PromotionMove(WHITE, FileType.B, FileType.A, QUEEN),
+            new SimpleMove(square(FileType.F, RankType.EIGHT), square(FileType.A, RankType.EIGHT), ROOK, BLACK),
+        };
+        for (Move move:moves) {
+            position.makeMove(move);
+        }
+        assertEquals(4, position.getPly());
+        assertEquals(WHITE, position.getSideToMove());
+        assertEquals(22, position.getTurnNumber());
+        assertEquals(Set.of(new Castle(WHITE, CastleType.LONG), new Castle(WHITE, CastleType.SHORT)), position.getCastlingRights());
+        assertEquals(Optional.of(new Piece(BLACK, ROOK)), position.getBoard().getPiece(square(FileType.A, RankType.EIGHT)));
+        assertEquals(Optional.of(new Piece(BLACK, KING)), position.getBoard().getPiece(square(FileType.G, RankType.EIGHT)));
+        assertEquals(1L << square(FileType.D, RankType.SIX).getIndex(), position.getBoard().getBitboard(WHITE, PAWN));
+
+        for (int i = 0; i < moves.length; i++) {
+            position.unmakeMove();
+        }
+        assertEquals(initialBoard, position.getBoard());
+        assertEquals(initialRights, position.getCastlingRights());
+        assertEquals(Optional.of(square(FileType.D, RankType.SIX)), position.getEnPassantSquare());
+        assertEquals(0, position.getFiftyMoveRuleCounter());
+        assertEquals(20, position.getTurnNumber());
+        assertEquals(WHITE, position.getSideToMove());
+    }
+
+    @Test
+    void makeMove_tracksEnPassantSquareAndFiftyMoveCounter() {
+        Position position = position("4k3/8/8/8/8/8/4P3/4K3 w - - 7 30");
+        position.makeMove(new SimpleMove(square(FileType.E, RankType.TWO), square(FileType.E, RankType.FOUR), PAWN, WHITE));
+        assertEquals(Optional.of(square(FileType.E, RankType.THREE)), position.getEnPassantSquare());
+        assertEquals(0, position.getFiftyMoveRuleCounter());
+
+        position.makeMove(new SimpleMove(square(FileType.E, RankType.EIGHT), square(FileType.D, RankType.EIGHT), KING, BLACK));
+        assertEquals(Optional.empty(), position.getEnPassantSquare());
+        assertEquals(1, position.getFiftyMoveRuleCounter());
+    }
+
+    @Test
+    void makeMove_doesNotChangeSourceBoard() {
+        Game game = gameService.startGame();
+        Position position = gameService.toPosition(game);
+        position.makeMove(new SimpleMove(square(FileType.E, RankType.TWO), square(FileType.E, RankType.FOUR), PAWN, WHITE));
+
+        assertTrue(game.getCurrentBoard().getPiece(square(FileType.E, RankType.TWO)).isPresent());
+        assertFalse(position.getBoard().getPiece(square(FileType.E, RankType.TWO)).isPresent());
+    }
+
+    @Test
+    void zobristKey_restoredByUnmakeAndSharedByTranspositions() {
+        Position position = position("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 20");
+        long initialKey = position.getZobristKey();
+        position.makeMove(new EnPassantCapture(WHITE, FileType.E, FileType.D));
+        assertNotEquals(initialKey, position.getZobristKey());
+        assertEquals(position("r3k2r/1P6/3P4/8/8/8/8/R3K2R b KQkq - 0 20").getZobristKey(), position.getZobristKey());
+        position.makeMove(new Castle(BLACK, CastleType.SHORT));
+        assertEquals(position("r4rk1/1P6/3P4/8/8/8/8/R3K2R w KQ - 1 21").getZobristKey(), position.getZobristKey());
+        position.unmakeMove();
+        position.unmakeMove();
+        assertEquals(initialKey, position.getZobristKey());
+
+        // The knights go out and come back, leaving only the move counters changed.
+        Position start = gameService.toPosition(gameService.startGame());
+        long startKey = start.getZobristKey();
+        start.makeMove(new SimpleMove(square(FileType.G, RankType.ONE), square(FileType.F, RankType.THREE), KNIGHT, WHITE));
+        start.makeMove(new SimpleMove(square(FileType.G, RankType.EIGHT), square(FileType.F, RankType.SIX), KNIGHT, BLACK));
+        start.makeMove(new SimpleMove(square(FileType.F, RankType.THREE), square(FileType.G, RankType.ONE), KNIGHT, WHITE));
+        start.makeMove(new SimpleMove(square(FileType.F, RankType.SIX), square(FileType.G, RankType.EIGHT), KNIGHT, BLACK));
+        assertEquals(startKey, start.getZobristKey());
+    }
+
+    @Test
+    void pieceSquareScore_restoredByUnmakeAndMatchesFreshBoard() {
+        assertEquals(0, gameService.toPosition(gameService.startGame()).getBoard().getPieceSquareScore());
+
+        Position position = position("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 20");
+        int initialScore = position.getBoard().getPieceSquareScore();
+        position.makeMove(new EnPassantCapture(WHITE, FileType.E, FileType.D));
+        assertEquals(position("r3k2r/1P6/3P4/8/8/8/8/R3K2R b KQkq - 0 20").getBoard().getPieceSquareScore(), position.getBoard().getPieceSquareScore());
+        position.makeMove(new Castle(BLACK, CastleType.SHORT));
+        assertEquals(position("r4rk1/1P6/3P4/8/8/8/8/R3K2R w KQ - 1 21").getBoard().getPieceSquareScore(), position.getBoard().getPieceSquareScore());
+        position.makeMove(new PromotionMove(WHITE, FileType.B, FileType.A, QUEEN));
+        assertEquals(position("Q4rk1/8/3P4/8/8/8/8/R3K2R b KQ - 0 21").getBoard().getPieceSquareScore(), position.getBoard().getPieceSquareScore());
+        position.unmakeMove();
+        position.unmakeMove();
+        position.unmakeMove();
+        assertEquals(initialScore, position.getBoard().getPieceSquareScore());
+    }
+
+    @Test
+    void zobristKey_countsEnPassantOnlyWhenCapturePossible() {
+        assertEquals(
+            position("4k3/8/8/8/4P3/8/8/4K3 b - - 0 1").getZobristKey(),
+            position("4k3/8/8/8/4P3/8/8/4K3 b - e3 0 1").getZobristKey()
+        );
+        assertNotEquals(
+            position("4k3/8/8/8/3pP3/8/8/4K3 b - - 0 1").getZobristKey(),
+            position("4k3/8/8/8/3pP3/8/8/4K3 b - e3 0 1").getZobristKey()
+        );
+    }
+
+    @Test
+    void zobristKey_matchesGameKey() {
+        Game game = fenService.getGame("r3k2r/8/8/8/8/8/3p4/R3K2R b KQkq - 0 20");
+        Position position = gameService.toPosition(game);
+        Move[] moves = {
+            new SimpleMove(square(FileType.A, RankType.EIGHT), square(FileType.A, RankType.ONE), ROOK, BLACK),
+            new SimpleMove(square(FileType.E, RankType.ONE), square(FileType.D, RankType.TWO), KING, WHITE),
+            new SimpleMove(square(FileType.E, RankType.EIGHT), square(FileType.E, RankType.SEVEN), KING, BLACK),
+        };
+        assertEquals(position.getZobristKey(), gameService.getZobristKey(game));
+        for (Move move:moves) {
+            position.makeMove(move);
+            gameService.applyMove(game, move);
+            assertEquals(position.getZobristKey(), gameService.getZobristKey(game));
+            assertEquals(gameService.toPosition(game).getZobristKey(), gameService.getZobristKey(game));
+        }
+    }
+
+    @Test
+    void isRepetition_sinceLastPawnMove() {
+        Position position = position("4k3/8/8/8/8/8/4P3/R3K3 w - - 0 1");
+        Move[] shuffle = {
+            new SimpleMove(square(FileType.A, RankType.ONE), square(FileType.A, RankType.TWO), ROOK, WHITE),
+            new SimpleMove(square(FileType.E, RankType.EIGHT), square(FileType.D, RankType.EIGHT), KING, BLACK),
+            new SimpleMove(square(FileType.A, RankType.TWO), square(FileType.A, RankType.ONE), ROOK, WHITE),
+            new SimpleMove(square(FileType.D, RankType.EIGHT), square(FileType.E, RankType.EIGHT), KING, BLACK),
+        };
+        for (Move move:shuffle) {
+            assertFalse(position.isRepetition());
+            position.makeMove(move);
+        }
+        assertTrue(position.isRepetition());
+        position.unmakeMove();
+        assertFalse(position.isRepetition());
+        position.makeMove(shuffle[3]);
+
+        // Only the positions after a pawn move are compared, and the first of those repeats.
+        position.makeMove(new SimpleMove(square(FileType.E, RankType.TWO), square(FileType.E, RankType.THREE), PAWN, WHITE));
+        for (Move move:new Move[] {shuffle[1], shuffle[0], shuffle[3]}) {
+            position.makeMove(move);
+            assertFalse(position.isRepetition());
+        }
+        position.makeMove(shuffle[2]);
+        assertTrue(position.isRepetition());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/1P6/8/3pP3/8/8/8/R3K2R w Kq d6 0 20",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 37 141",
+    })
+    void packedPosition_roundTrips(String fen) {
+        Position position = position(fen);
+        Position unpacked = PackedPosition.unpack(PackedPosition.pack(position));
+        assertEquals(position.toBoard(), unpacked.toBoard());
+        assertEquals(position.getZobristKey(), unpacked.getZobristKey());
+        assertEquals(position.getSideToMove(), unpacked.getSideToMove());
+        assertEquals(position.getCastlingRights(), unpacked.getCastlingRights());
+        assertEquals(position.getEnPassantSquare(), unpacked.getEnPassantSquare());
+        assertEquals(position.getFiftyMoveRuleCounter(), unpacked.getFiftyMoveRuleCounter());
+        assertEquals(position.getTurnNumber(), unpacked.getTurnNumber());
+        assertEquals(position.getBoard().getPieceSquareScore(), unpacked.getBoard().getPieceSquareScore());
+    }
+}
@@ -0,0 +1,71 @@
+package org.dexenjaeger.chess.models.moves;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.board.FileType;
+import org.dexenjaeger.chess.models.board.RankType;
+import org.dexenjaeger.chess.models.board.Square;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+import org.junit.jupiter.api.Test;
+
+class EncodedMoveTest {
+    private final List<Move> moves = List.of(
+        new SimpleMove(new Square(FileType.G, RankType.ONE), new Square(FileType.F, RankType.THREE), PieceType.KNIGHT, Side.WHITE),
+        new SimpleMove(new Square(FileType.E, RankType.SEVEN), new Square(FileType.E, RankType.FIVE), PieceType.PAWN, Side.BLACK),
+        new PromotionMove(Side.WHITE, FileType.B, FileType.A, PieceType.QUEEN),
+        new PromotionMove(Side.BLACK, FileType.H, PieceType.KNIGHT),
+        new EnPassantCapture(Side.WHITE, FileType.E, FileType.D),
+        new EnPassantCapture(Side.BLACK, FileType.C, FileType.B),
+        new Castle(Side.WHITE, CastleType.SHORT),
+        new Castle(Side.BLACK, CastleType.LONG)
+    );
+
+    @Test
+    void fromMove_roundTrips() {
+        for (Move move:moves) {
+            int encoded = EncodedMove.fromMove(move);
+            assertNotEquals(EncodedMove.NONE, encoded);
+            assertEquals(move, EncodedMove.toMove(encoded));
+        }
+    }
+
+    @Test
+    void fields() {
+        int promotion = EncodedMove.fromMove(new PromotionMove(Side.WHITE, FileType.B, FileType.A, PieceType.QUEEN));
+        assertEquals(new Square(FileType.B, RankType.SEVEN).getIndex(), EncodedMove.getFrom(promotion));
+        assertEquals(new Square(FileType.A, RankType.EIGHT).getIndex(), EncodedMove.getTo(promotion));
+        assertEquals(PieceType.PAWN, EncodedMove.getPieceType(promotion));
+        assertEquals(PieceType.QUEEN, EncodedMove.getPromotionType(promotion));
+        assertTrue(EncodedMove.isPromotion(promotion));
+        assertFalse(EncodedMove.isEnPassant(promotion));
+
+        int enPassant = EncodedMove.fromMove(new EnPassantCapture(Side.BLACK, FileType.C, FileType.B));
+        assertEquals(Side.BLACK, EncodedMove.getSide(enPassant));
+        assertEquals(new Square(FileType.B, RankType.FOUR).getIndex(), EncodedMove.getEnPassantCapturedSquare(enPassant));
+
+        int castle = EncodedMove.fromMove(new Castle(Side.BLACK, CastleType.LONG));
+        assertTrue(EncodedMove.isCastle(castle));
+        assertEquals(CastleType.LONG, EncodedMove.getCastleType(castle));
+        assertEquals(PieceType.KING, EncodedMove.getPieceType(castle));
+    }
+
+    @Test
+    void moveList_growsAndConverts() {
+        MoveList moveList = new MoveList(2);
+        for (Move move:moves) {
+            moveList.add(EncodedMove.fromMove(move));
+        }
+        assertEquals(moves.size(), moveList.size());
+        assertTrue(moveList.contains(EncodedMove.fromMove(new Castle(Side.WHITE, CastleType.SHORT))));
+        assertEquals(Set.copyOf(moves), moveList.toMoves());
+
+        moveList.clear();
+        assertTrue(moveList.isEmpty());
+    }
+}
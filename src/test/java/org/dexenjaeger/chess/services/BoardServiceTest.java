@@ -9,6 +9,7 @@ import static org.dexenjaeger.chess.models.pieces.PieceType.PAWN;
 import static org.dexenjaeger.chess.models.pieces.PieceType.QUEEN;
 import static org.dexenjaeger.chess.models.pieces.PieceType.ROOK;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.HashMap;
@@ -27,11 +28,14 @@ import org.dexenjaeger.chess.models.moves.SimpleMove;
 import org.dexenjaeger.chess.models.pieces.Piece;
 import org.dexenjaeger.chess.models.pieces.PieceType;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 
 class BoardServiceTest {
     public static final ServiceProvider serviceProvider = new ServiceProvider();
     private final BoardService boardService = serviceProvider.getInstance(BoardService.class);
     private static final PgnService pgnService = serviceProvider.getInstance(PgnService.class);
+    private static final FenService fenService = serviceProvider.getInstance(FenService.class);
 
     public static void assertPiece(Board board, FileType x, RankType y, Piece expected) {
         Optional<Piece> p = board.getPiece(x, y);
@@ -182,6 +186,15 @@ class BoardServiceTest {
         );
     }
 
+    @Test
+    void isLegal_pawnOnTheLastRankMustPromote() {
+        Board board = fenService.readPieceLocations("4k3/P7/8/8/8/8/8/4K3");
+        assertFalse(boardService.isLegal(board, new SimpleMove(
+            new Square(FileType.A, RankType.SEVEN), new Square(FileType.A, RankType.EIGHT), PAWN, WHITE
+        )));
+        assertTrue(boardService.isLegal(board, new PromotionMove(WHITE, FileType.A, QUEEN)));
+    }
+
     @Test
     void getMoves_pawnThatHasMoved() {
         assertEquals(
@@ -197,4 +210,22 @@ class BoardServiceTest {
             )
         );
     }
+
+    @ParameterizedTest
+    @CsvSource({
+        "4k3/8/8/8/8/8/3p4/4K3 w - - 0 1, E, ONE, BLACK, true",
+        "4k3/8/8/8/8/8/4p3/4K3 w - - 0 1, E, ONE, BLACK, false",
+        "4k3/8/8/8/8/5n2/8/4K3 w - - 0 1, E, ONE, BLACK, true",
+        "4k3/8/8/8/8/8/8/r1N1K3 w - - 0 1, E, ONE, BLACK, false",
+        "4k3/8/8/8/8/8/8/r3K3 w - - 0 1, E, ONE, BLACK, true",
+        "4k3/8/8/8/q7/8/8/4K3 w - - 0 1, E, ONE, BLACK, false",
+        "4k3/8/8/8/8/8/8/3QK3 w - - 0 1, D, EIGHT, WHITE, true",
+        "4k3/8/8/8/8/8/8/3QK3 w - - 0 1, E, ONE, BLACK, false",
+        "4k3/8/8/8/8/8/8/3QK3 w - - 0 1, F, TWO, WHITE, true",
+        "4k3/8/8/8/8/8/8/3QK3 w - - 0 1, H, FIVE, WHITE, true",
+    })
+    void isSquareAttacked(String fen, FileType file, RankType rank, Side bySide, boolean expected) {
+        Board board = fenService.getGame(fen).getCurrentBoard();
+        assertEquals(expected, boardService.isSquareAttacked(board, new Square(file, rank), bySide));
+    }
 }
@@ -9,6 +9,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Set;
 import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.GameStatus;
 import org.dexenjaeger.chess.models.Side;
 import org.dexenjaeger.chess.models.board.Board;
 import org.dexenjaeger.chess.models.board.FileType;
@@ -161,4 +162,54 @@ class GameServiceTest {
             gameService.getGameStatus(game)
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void getGameStatusTest_recognizesThreefoldRepetition() {
+        Game game = pgnService.gameFromPgn("1. Nf3 Nf6 2. Ng1 Ng8 3. Nf3 Nf6 4. Ng1 Ng8");
+        assertEquals(2, gameService.getRepetitions(game));
+        assertEquals(4, gameService.getPliesSinceRepetition(game));
+        assertEquals(GameStatus.STALEMATE, gameService.getGameStatus(game));
+
+        game.goToParentMove();
+        assertEquals(1, gameService.getRepetitions(game));
+        assertEquals(GameStatus.BLACK_TO_MOVE, gameService.getGameStatus(game));
+        // The positions before the current one go along with a detached game.
+        Game detachedGame = gameService.detachGameState(game);
+        gameService.applyMove(detachedGame, pgnService.fromPgnMove("Ng8", BLACK, detachedGame.getCurrentBoard()));
+        assertEquals(GameStatus.STALEMATE, gameService.getGameStatus(detachedGame));
+    }
+
+    @Test
+    void getRepetitionsTest_countsCastlingRights() {
+        // The kings come back to the same squares without the right to castle.
+        Game game = pgnService.gameFromPgn("1. e3 e6 2. Ke2 Ke7 3. Ke1 Ke8 4. Ke2 Ke7 5. Ke1 Ke8");
+        assertEquals(1, gameService.getRepetitions(game));
+        assertEquals(4, gameService.getPliesSinceRepetition(game));
+        assertEquals(GameStatus.WHITE_TO_MOVE, gameService.getGameStatus(game));
+    }
+
+    @Test
+    void getCastlingRightsTest_followsTheMoves() {
+        Game game = pgnService.gameFromPgn("1. Nf3 Nf6 2. Rg1 e6 3. Rh1 Ke7 4. e3");
+        assertEquals(
+            Set.of(new Castle(WHITE, CastleType.LONG), new Castle(BLACK, CastleType.SHORT), new Castle(BLACK, CastleType.LONG)),
+            gameService.getCastlingRights(gameService.detachGameState(game.goToParentMove().goToParentMove().goToParentMove()))
+        );
+        assertEquals(Set.of(new Castle(WHITE, CastleType.LONG)), gameService.getCastlingRights(game.goToLastMove()));
+        assertEquals(
+            Set.of(new Castle(WHITE, CastleType.LONG)),
+            gameService.getCastlingRights(gameService.detachGameState(game))
+        );
+        // The rights go back along with the game.
+        assertEquals(4, gameService.getCastlingRights(game.goToFirstMove()).size());
+    }
+
+    @Test
+    void getGameStatusTest_recognizesInsufficientMaterial() {
+        // Bxb8 leaves a bishop against a king.
+        Game game = fenService.getGame("1r2k3/8/8/4B3/8/8/8/4K3 w - - 0 1");
+        assertEquals(GameStatus.WHITE_TO_MOVE, gameService.getGameStatus(game));
+        gameService.applyMove(game, pgnService.fromPgnMove("Bxb8", WHITE, game.getCurrentBoard()));
+        assertEquals(GameStatus.STALEMATE, gameService.getGameStatus(game));
+    }
+}
@@ -0,0 +1,252 @@
+package org.dexenjaeger.chess.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.GameStatus;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.board.Board;
+import org.dexenjaeger.chess.models.board.FileType;
+import org.dexenjaeger.chess.models.board.Position;
+import org.dexenjaeger.chess.models.moves.Castle;
+import org.dexenjaeger.chess.models.moves.CastleType;
+import org.dexenjaeger.chess.models.moves.EnPassantCapture;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.models.moves.MoveList;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class LegalMoveServiceTest {
+    private static final ServiceProvider serviceProvider = new ServiceProvider();
+    private final LegalMoveService legalMoveService = serviceProvider.getInstance(LegalMoveService.class);
+    private final FenService fenService = serviceProvider.getInstance(FenService.class);
+    private final GameService gameService = serviceProvider.getInstance(GameService.class);
+
+    private Position position(String fen) {
+        return gameService.toPosition(fenService.getGame(fen));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1, 20",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1, 48",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1, 14",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1, 6",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8, 44",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10, 46",
+    })
+    void getLegalMoves_referencePositions(String fen, int expectedCount) {
+        assertEquals(expectedCount, legalMoveService.getLegalMoves(position(fen)).size());
+    }
+
+    // Every move of every piece of the side to move, to every square, is checked against the
+    // generated moves.
+    @ParameterizedTest
+    @CsvSource({
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "4k3/8/8/8/1b6/3n4/8/4K3 w - - 0 1",
+        "4k3/8/8/K2pP2r/8/8/8/8 w - d6 0 2",
+    })
+    void isLegalNormalMove_agreesWithLegalMoves(String fen) {
+        Position position = position(fen);
+        Board board = position.getBoard();
+        Side side = position.getSideToMove();
+        MoveList legalMoves = new MoveList();
+        legalMoveService.generateLegalMoves(position, legalMoves);
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            if (!EncodedMove.isCastle(move) && !EncodedMove.isEnPassant(move)) {
+                expected.add(move);
+            }
+        }
+
+        Set<Integer> actual = new HashSet<>();
+        for (PieceType type:PieceType.values()) {
+            for (int from = 0; from < 64; from++) {
+                if ((board.getBitboard(side, type) & (1L << from)) == 0) {
+                    continue;
+                }
+                for (int to = 0; to < 64; to++) {
+                    int move = type == PieceType.PAWN && (to >>> 3) == (side == Side.WHITE ? 7 : 0)
+                        ? EncodedMove.promotion(from, to, side, PieceType.QUEEN)
+                        : EncodedMove.normal(from, to, type, side);
+                    if (legalMoveService.isLegalNormalMove(board, move)) {
+                        actual.add(move);
+                    }
+                }
+            }
+        }
+        expected.removeIf(move -> EncodedMove.isPromotion(move) && EncodedMove.getPromotionType(move) != PieceType.QUEEN);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void isLegalNormalMove_pawnsPromoteOnTheLastRank() {
+        Board board = position("4k3/P7/8/8/8/8/1p6/4K3 w - - 0 1").getBoard();
+        // a7-a8 and b2-b1 have to promote.
+        assertFalse(legalMoveService.isLegalNormalMove(board, EncodedMove.normal(48, 56, PieceType.PAWN, Side.WHITE)));
+        assertTrue(legalMoveService.isLegalNormalMove(board, EncodedMove.promotion(48, 56, Side.WHITE, PieceType.QUEEN)));
+        assertFalse(legalMoveService.isLegalNormalMove(board, EncodedMove.normal(9, 1, PieceType.PAWN, Side.BLACK)));
+        assertTrue(legalMoveService.isLegalNormalMove(board, EncodedMove.promotion(9, 1, Side.BLACK, PieceType.KNIGHT)));
+        // And a pawn can't promote anywhere else.
+        Board startingBoard = position("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1").getBoard();
+        assertFalse(legalMoveService.isLegalNormalMove(startingBoard, EncodedMove.promotion(12, 20, Side.WHITE, PieceType.QUEEN)));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1,WHITE_TO_MOVE",
+        "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3,BLACK_WON",
+        "r5k1/8/8/8/8/8/5PPP/r5K1 w - - 0 1,BLACK_WON",
+        "7k/5Q2/6K1/8/8/8/8/8 b - - 0 1,STALEMATE",
+        // Double check, which only the king can answer.
+        "4k3/8/8/8/1b6/3n4/8/4K3 w - - 0 1,WHITE_TO_MOVE",
+        // Capturing the checking pawn en passant is the only legal move.
+        "7k/8/p1p5/Pp6/KP6/PP6/8/8 w - b6 0 2,WHITE_TO_MOVE",
+        "7k/8/p1p5/Pp6/KP6/PP6/8/8 w - - 0 2,BLACK_WON",
+    })
+    void getStatus_agreesWithLegalMoves(String fen, GameStatus expected) {
+        Position position = position(fen);
+        long key = position.getZobristKey();
+        assertEquals(expected, legalMoveService.getStatus(position));
+        assertEquals(!legalMoveService.getLegalMoves(position).isEmpty(), legalMoveService.hasAnyLegalMove(position));
+        assertEquals(key, position.getZobristKey());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "4k3/8/8/K2pP2r/8/8/8/8 w - d6 0 2",
+    })
+    void generateTacticalAndQuietMoves_splitLegalMoves(String fen) {
+        Position position = position(fen);
+        MoveList tactical = new MoveList();
+        legalMoveService.generateTacticalMoves(position, tactical);
+        MoveList quiet = new MoveList();
+        legalMoveService.generateQuietMoves(position, quiet);
+
+        long opponents = position.getBoard().getBitboard(position.getSideToMove().other());
+        for (int i = 0; i < tactical.size(); i++) {
+            int move = tactical.get(i);
+            assertTrue(
+                EncodedMove.isPromotion(move) || EncodedMove.isEnPassant(move)
+                    || (opponents & (1L << EncodedMove.getTo(move))) != 0
+            );
+        }
+        Set<Move> moves = tactical.toMoves();
+        moves.addAll(quiet.toMoves());
+        assertEquals(tactical.size() + quiet.size(), moves.size());
+        assertEquals(legalMoveService.getLegalMoves(position), moves);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "4k3/8/8/8/1b6/3n4/8/4K3 w - - 0 1",
+    })
+    void countNormalMoves_agreesWithNormalMoves(String fen) {
+        Board board = position(fen).getBoard();
+        for (Side side:Side.values()) {
+            assertEquals(legalMoveService.getNormalMoves(board, side).size(), legalMoveService.countNormalMoves(board, side));
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "4k3/8/8/8/8/8/1B6/R3K1NQ w - - 0 1",
+        "4k3/4N3/8/8/8/8/4R3/4K3 w - - 0 1",
+    })
+    void givesCheck(String fen) {
+        Position position = position(fen);
+        MoveList moves = new MoveList();
+        legalMoveService.generateLegalMoves(position, moves);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (EncodedMove.isCastle(move) || EncodedMove.isEnPassant(move)) {
+                continue;
+            }
+            boolean givesCheck = legalMoveService.givesCheck(position, move);
+            position.makeMove(move);
+            assertEquals(gameService.isInCheck(position), givesCheck, EncodedMove.toMove(move).toString());
+            position.unmakeMove();
+        }
+    }
+
+    // The checks are the legal moves that give check, other than promotions, castles and en
+    // passant captures.
+    @ParameterizedTest
+    @CsvSource({
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "4k3/8/8/8/8/8/1B6/R3K1NQ w - - 0 1",
+        "4k3/4N3/8/8/8/8/4R3/4K3 w - - 0 1",
+        "4k3/8/8/4K3/8/8/8/4R3 w - - 0 1",
+        "4k3/8/8/3p4/4P3/8/8/4R1K1 w - - 0 1",
+        "4k3/8/8/8/1b6/3n4/8/4K3 w - - 0 1",
+    })
+    void generateChecks_givesTheChecks(String fen) {
+        Position position = position(fen);
+        MoveList legalMoves = new MoveList();
+        legalMoveService.generateLegalMoves(position, legalMoves);
+        Set<Move> expected = new HashSet<>();
+        for (int i = 0; i < legalMoves.size(); i++) {
+            int move = legalMoves.get(i);
+            if (
+                !EncodedMove.isCastle(move) && !EncodedMove.isEnPassant(move) && !EncodedMove.isPromotion(move)
+                    && legalMoveService.givesCheck(position, move)
+            ) {
+                expected.add(EncodedMove.toMove(move));
+            }
+        }
+        MoveList checks = new MoveList();
+        legalMoveService.generateChecks(position, checks);
+        assertEquals(expected.size(), checks.size());
+        assertEquals(expected, checks.toMoves());
+    }
+
+    @Test
+    void getLegalMoves_cannotCastleThroughCheck() {
+        // The rook on f8 covers f1, so only the long castle is available.
+        Set<Move> moves = legalMoveService.getLegalMoves(position("4kr2/8/8/8/8/8/8/R3K2R w KQ - 0 1"));
+        assertFalse(moves.contains(new Castle(Side.WHITE, CastleType.SHORT)));
+        assertTrue(moves.contains(new Castle(Side.WHITE, CastleType.LONG)));
+    }
+
+    @Test
+    void getLegalMoves_cannotCastleOutOfCheck() {
+        Set<Move> moves = legalMoveService.getLegalMoves(position("4kr2/8/8/8/8/8/8/R3K2R w KQ - 0 1"));
+        assertTrue(moves.contains(new Castle(Side.WHITE, CastleType.LONG)));
+        moves = legalMoveService.getLegalMoves(position("4k3/4r3/8/8/8/8/8/R3K2R w KQ - 0 1"));
+        assertFalse(moves.contains(new Castle(Side.WHITE, CastleType.LONG)));
+        assertFalse(moves.contains(new Castle(Side.WHITE, CastleType.SHORT)));
+    }
+
+    @Test
+    void getLegalMoves_enPassantThatExposesTheKing() {
+        // Capturing on d6 would take both pawns off the fifth rank and leave the king in check.
+        Set<Move> moves = legalMoveService.getLegalMoves(position("4k3/8/8/K2pP2r/8/8/8/8 w - d6 0 2"));
+        assertFalse(moves.contains(new EnPassantCapture(Side.WHITE, FileType.E, FileType.D)));
+    }
+}
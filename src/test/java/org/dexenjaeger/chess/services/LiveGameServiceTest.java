@@ -0,0 +1,126 @@
+package org.dexenjaeger.chess.services;
+
+import static org.dexenjaeger.chess.models.Side.BLACK;
+import static org.dexenjaeger.chess.models.Side.WHITE;
+import static org.dexenjaeger.chess.models.pieces.PieceType.KING;
+import static org.dexenjaeger.chess.models.pieces.PieceType.PAWN;
+import static org.dexenjaeger.chess.models.pieces.PieceType.QUEEN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.GameStatus;
+import org.dexenjaeger.chess.models.board.FileType;
+import org.dexenjaeger.chess.models.board.Position;
+import org.dexenjaeger.chess.models.board.RankType;
+import org.dexenjaeger.chess.models.board.Square;
+import org.dexenjaeger.chess.models.moves.EnPassantCapture;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.models.moves.PromotionMove;
+import org.dexenjaeger.chess.models.moves.SimpleMove;
+import org.dexenjaeger.chess.models.pieces.Piece;
+import org.junit.jupiter.api.Test;
+
+class LiveGameServiceTest {
+    private final ServiceProvider serviceProvider = new ServiceProvider();
+    private final LiveGameService liveGameService = serviceProvider.getInstance(LiveGameService.class);
+    private final PgnService pgnService = serviceProvider.getInstance(PgnService.class);
+    private final FenService fenService = serviceProvider.getInstance(FenService.class);
+
+    private Move move(long id, String pgnMove) {
+        Position position = liveGameService.getPosition(id);
+        return pgnService.fromPgnMove(pgnMove, position.getSideToMove(), position.getBoard());
+    }
+
+    private GameStatus play(long id, String pgnMoves) {
+        GameStatus status = liveGameService.getStatus(id);
+        for (String pgnMove:pgnMoves.split(" ")) {
+            status = liveGameService.applyMove(id, move(id, pgnMove));
+        }
+        return status;
+    }
+
+    @Test
+    void applyMove_playsToCheckmate() {
+        long id = liveGameService.startGame();
+        assertEquals(GameStatus.WHITE_TO_MOVE, liveGameService.getStatus(id));
+        assertEquals(GameStatus.WHITE_WON, play(id, "e4 e5 Bc4 Nc6 Qf3 d6 Qf7"));
+        assertEquals(7, liveGameService.getMoves(id).size());
+        assertEquals(
+            pgnService.gameFromPgn("1. e4 e5 2. Bc4 Nc6 3. Qf3 d6 4. Qf7").getCurrentBoard(),
+            liveGameService.getPosition(id).getBoard()
+        );
+        // The game is over.
+        Move move = new SimpleMove(new Square(FileType.E, RankType.EIGHT), new Square(FileType.D, RankType.SEVEN), KING, BLACK);
+        assertThrows(ServiceException.class, () -> liveGameService.applyMove(id, move));
+    }
+
+    @Test
+    void applyMove_rejectsIllegalMoves() {
+        long id = liveGameService.startGame();
+        play(id, "e4");
+        // White moved last, and a pawn can't move three squares.
+        Move whiteMove = move(id, "e5");
+        liveGameService.applyMove(id, move(id, "d5"));
+        assertThrows(ServiceException.class, () -> liveGameService.applyMove(id, whiteMove));
+        assertThrows(ServiceException.class, () -> liveGameService.applyMove(id + 1, whiteMove));
+        assertEquals(2, liveGameService.getMoves(id).size());
+        assertEquals(GameStatus.WHITE_TO_MOVE, liveGameService.getStatus(id));
+    }
+
+    @Test
+    void applyMove_checksCastlingRightsAndEnPassant() {
+        long id = liveGameService.startGame(fenService.getGame("r3k2r/8/8/8/3p4/8/4P3/R3K2R w Kq - 0 1"));
+        Move longCastle = move(id, "O-O-O");
+        assertThrows(ServiceException.class, () -> liveGameService.applyMove(id, longCastle));
+        play(id, "e4");
+        liveGameService.applyMove(id, new EnPassantCapture(BLACK, FileType.D, FileType.E));
+        assertEquals(GameStatus.WHITE_TO_MOVE, play(id, "O-O O-O-O"));
+        assertEquals(GameStatus.BLACK_TO_MOVE, play(id, "Kg2"));
+    }
+
+    @Test
+    void applyMove_pawnOnTheLastRankMustPromote() {
+        long id = liveGameService.startGame(fenService.getGame("4k3/P7/8/8/8/8/8/4K3 w - - 0 1"));
+        Move pawnMove = new SimpleMove(
+            new Square(FileType.A, RankType.SEVEN), new Square(FileType.A, RankType.EIGHT), PAWN, WHITE
+        );
+        assertThrows(ServiceException.class, () -> liveGameService.applyMove(id, pawnMove));
+        assertEquals(0, liveGameService.getMoveCount(id));
+        assertEquals(GameStatus.BLACK_TO_MOVE, liveGameService.applyMove(id, new PromotionMove(WHITE, FileType.A, QUEEN)));
+        assertEquals(
+            Optional.of(new Piece(WHITE, QUEEN)),
+            liveGameService.getPosition(id).getBoard().getPiece(new Square(FileType.A, RankType.EIGHT))
+        );
+    }
+
+    @Test
+    void applyMove_threefoldRepetition() {
+        long id = liveGameService.startGame();
+        assertEquals(GameStatus.BLACK_TO_MOVE, play(id, "Nf3 Nf6 Ng1 Ng8 Nf3 Nf6 Ng1"));
+        assertEquals(GameStatus.STALEMATE, play(id, "Ng8"));
+    }
+
+    @Test
+    void applyMove_concurrentGames() throws ExecutionException, InterruptedException {
+        ThreadService threadService = ThreadService.init(4);
+        List<Long> ids = new ArrayList<>();
+        List<Future<GameStatus>> futures = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            long id = liveGameService.startGame();
+            ids.add(id);
+            futures.add(threadService.submit(() -> play(id, "e4 e5 Bc4 Nc6 Qf3 d6 Qf7")));
+        }
+        for (Future<GameStatus> future:futures) {
+            assertEquals(GameStatus.WHITE_WON, future.get());
+        }
+        assertEquals(16, liveGameService.size());
+        ids.forEach(liveGameService::removeGame);
+        assertEquals(0, liveGameService.size());
+    }
+}
@@ -0,0 +1,62 @@
+package org.dexenjaeger.chess.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.analysis.PerftReference;
+import org.dexenjaeger.chess.models.analysis.PerftResult;
+import org.dexenjaeger.chess.models.board.FileType;
+import org.dexenjaeger.chess.models.board.RankType;
+import org.dexenjaeger.chess.models.board.Square;
+import org.dexenjaeger.chess.models.moves.SimpleMove;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class PerftServiceTest {
+    private static final ServiceProvider serviceProvider = new ServiceProvider();
+    private final PerftService perftService = serviceProvider.getInstance(PerftService.class);
+
+    // Depths are kept small enough for the unit test run. Deeper counts are in PerftReference.
+    @ParameterizedTest
+    @CsvSource({
+        "START, 3",
+        "KIWIPETE, 3",
+        "POSITION_3, 4",
+        "POSITION_4, 3",
+        "POSITION_5, 3",
+        "POSITION_6, 3",
+    })
+    void perft_referencePositions(PerftReference reference, int depth) {
+        PerftResult result = perftService.perft(reference.getFen(), depth);
+        assertEquals(reference.getNodes(depth), result.getNodes());
+    }
+
+    @Test
+    void divide_startPosition() {
+        PerftResult result = perftService.divide(PerftReference.START.getFen(), 2);
+        assertEquals(400, result.getNodes());
+        assertEquals(20, result.getNodesByMove().size());
+        assertEquals(
+            20L,
+            result.getNodesByMove().get(new SimpleMove(
+                new Square(FileType.E, RankType.TWO), new Square(FileType.E, RankType.FOUR), PieceType.PAWN, Side.WHITE
+            ))
+        );
+    }
+
+    @Test
+    void perft_depthZero() {
+        assertEquals(1, perftService.perft(PerftReference.START.getFen(), 0).getNodes());
+    }
+
+    @Test
+    void perftAndDivide_rejectDepthsTheyCannotCount() {
+        String fen = PerftReference.START.getFen();
+        assertThrows(IllegalArgumentException.class, () -> perftService.perft(fen, -1));
+        assertThrows(IllegalArgumentException.class, () -> perftService.divide(fen, 0));
+    }
+}
@@ -238,6 +238,12 @@ class PgnServiceTest {
         );
     }
 
+    @Test
+    void gameFromPgn_longCastle() {
+        Game game = pgnService.gameFromPgn(PgnFileReader.readOpening(PgnFileReader.KOLMOV));
+        assertEquals(new Castle(Side.BLACK, CastleType.LONG), game.goToLastMove().getPreviousMove());
+    }
+
     @Test
     void gameFromPgn_withVariations() {
         Game sampleFisherGame = pgnService.gameFromPgn(PgnFileReader.readGame(PgnFileReader.SAMPLE_FISHER_GAME));
@@ -0,0 +1,115 @@
+package org.dexenjaeger.chess.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.dexenjaeger.chess.config.ExecutorType;
+import org.dexenjaeger.chess.models.analysis.CancellationToken;
+import org.junit.jupiter.api.Test;
+
+class ThreadServiceTest {
+    private final ThreadService threadService = ThreadService.init(2);
+
+    @Test
+    void submit() throws ExecutionException, InterruptedException {
+        Future<Integer> future = threadService.submit(() -> 6 * 7);
+        assertEquals(42, future.get());
+    }
+
+    // Falls back to platform threads before Java 21.
+    @Test
+    void submit_virtual() throws ExecutionException, InterruptedException {
+        ThreadService virtualThreadService = ThreadService.init(2, ExecutorType.VIRTUAL);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            futures.add(virtualThreadService.submit(() -> n));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(i, futures.get(i).get());
+        }
+        assertTrue(virtualThreadService.shutdown(Duration.ofSeconds(10)));
+    }
+
+    // Without virtual threads the tasks share as many platform threads as the fixed pool has.
+    @Test
+    void submit_virtualStaysBounded() throws ExecutionException, InterruptedException {
+        ThreadService virtualThreadService = ThreadService.init(2, ExecutorType.VIRTUAL);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(virtualThreadService.submit(() -> {
+                Thread.sleep(1);
+                return Thread.currentThread().getName();
+            }));
+        }
+        Set<String> platformThreads = new HashSet<>();
+        for (Future<String> future:futures) {
+            String name = future.get();
+            if (name.startsWith("chess-worker-")) {
+                platformThreads.add(name);
+            }
+        }
+        assertTrue(platformThreads.size() <= 2);
+        assertTrue(virtualThreadService.shutdown(Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void shutdown_waitsForRunningWork() {
+        AtomicBoolean finished = new AtomicBoolean();
+        threadService.run(() -> {
+            try {
+                Thread.sleep(50);
+                finished.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(threadService.shutdown(Duration.ofSeconds(10)));
+        assertTrue(finished.get());
+        assertTrue(threadService.isShutdown());
+        assertThrows(RejectedExecutionException.class, () -> threadService.submit(() -> 1));
+    }
+
+    @Test
+    void shutdown_interruptsWorkPastTimeout() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        threadService.run(() -> {
+            try {
+                Thread.sleep(Duration.ofMinutes(1).toMillis());
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        assertFalse(threadService.shutdown(Duration.ofMillis(50)));
+        interrupted.await();
+    }
+
+    @Test
+    void shutdown_cancelsSearchesPastTimeout() throws InterruptedException {
+        // Like a search, the task ignores interrupts and only checks its token.
+        CancellationToken cancellationToken = threadService.cancellationToken(CancellationToken.create());
+        CountDownLatch stopped = new CountDownLatch(1);
+        threadService.submit(ForkJoinTask.adapt(() -> {
+            while (!cancellationToken.isCancelled()) {
+                Thread.onSpinWait();
+            }
+            stopped.countDown();
+        }));
+        assertFalse(threadService.shutdown(Duration.ofMillis(50)));
+        assertTrue(threadService.isShutdown());
+        stopped.await();
+    }
+}
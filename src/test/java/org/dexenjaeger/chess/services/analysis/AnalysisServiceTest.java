@@ -1,11 +1,15 @@
 package org.dexenjaeger.chess.services.analysis;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
 import org.dexenjaeger.chess.config.BindingConfig;
 import org.dexenjaeger.chess.config.BindingHolder;
 import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.analysis.CancellationToken;
 import org.dexenjaeger.chess.models.board.Board;
 import org.dexenjaeger.chess.models.game.Game;
 import org.dexenjaeger.chess.models.game.GameSnapshot;
@@ -74,6 +78,20 @@ class AnalysisServiceTest {
         );
     }
 
+    @ParameterizedTest
+    @CsvSource({
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR",
+        "r2qnrk1/pp3pbp/2nN2p1/4Pb2/2P2P2/4B3/PP4PP/R2QKBNR",
+        "3qk3/3ppp2/8/8/2B5/2K2Q2/8/8",
+    })
+    void getCentipawnScore_matchesScore(String pieceLocations) {
+        Board board = fenService.readPieceLocations(pieceLocations);
+        assertEquals(
+            analysisService.getScore(board).movePointRight(2).intValueExact(),
+            analysisService.getCentipawnScore(board)
+        );
+    }
+
     @ParameterizedTest
     @CsvSource({
         "3qk3/3ppp2/8/8/2B5/2K2Q2/8/8 w - - 15 38,Qf7",
@@ -111,6 +129,74 @@ class AnalysisServiceTest {
         );
     }
 
+    @Test
+    void findForcedCheckmate_splitAcrossThreads() {
+        // Defending moves with an escape stop their siblings on the other threads.
+        AnalysisService splitAnalysisService = new ServiceProvider(BindingHolder.init(
+            BindingConfig.builder().nThreads(4).build()
+        )).getInstance(AnalysisService.class);
+        Game game = fenService.getGame("8/7k/p6p/4B1p1/3P1pQ1/7P/P5PK/5q2 w - - 15 38");
+        for (int i = 0; i < 3; i++) {
+            TreeNode<GameSnapshot> cursor = splitAnalysisService.findForcedCheckmate(game, 3).orElseThrow();
+            int plies = 0;
+            while (!cursor.getChildren().isEmpty()) {
+                cursor = cursor.getChildren().getFirst();
+                plies++;
+            }
+            assertEquals(5, plies);
+        }
+    }
+
+    @Test
+    void findForcedCheckmate_repetitionOnAnotherMoveOrder() {
+        // The black king shuffles between h7 and h8 while the white king walks over, so lines
+        // keep returning to positions they have been through. A position whose lines were cut
+        // that way must still be searched when another move order reaches it. One thread keeps
+        // the order the lines are searched in, and so which move order comes first.
+        AnalysisService sequentialAnalysisService = new ServiceProvider(BindingHolder.init(
+            BindingConfig.builder().nThreads(1).build()
+        )).getInstance(AnalysisService.class);
+        Game game = fenService.getGame("8/7k/8/8/8/8/4K1Q1/8 w - - 0 1");
+        TreeNode<GameSnapshot> cursor = sequentialAnalysisService.findForcedCheckmate(game, 5).orElseThrow();
+        int plies = 0;
+        while (!cursor.getChildren().isEmpty()) {
+            cursor = cursor.getChildren().getFirst();
+            plies++;
+        }
+        assertEquals(9, plies);
+    }
+
+    @Test
+    void findForcedCheckmate_moreTurnsThanTheTableHolds() {
+        Game game = fenService.getGame("6rk/6pp/7P/6N1/6K1/8/8/8 w - - 15 38");
+        assertEquals(
+            analysisService.findForcedCheckmate(game, 1).orElseThrow(),
+            analysisService.findForcedCheckmate(game, 300).orElseThrow()
+        );
+    }
+
+    @Test
+    void findForcedCheckmate_withinTimeout() {
+        Game game = fenService.getGame("6rk/6pp/7P/6N1/6K1/8/8/8 w - - 15 38");
+        assertTrue(analysisService.findForcedCheckmate(game, 1, Duration.ofMinutes(1)).isPresent());
+    }
+
+    @Test
+    void findForcedCheckmate_timedOut() {
+        Game game = fenService.getGame("2r1r1k1/5ppp/8/8/4R3/8/5PPP/4R1K1 w - - 15 38");
+        assertEquals(Optional.empty(), analysisService.findForcedCheckmate(game, 3, Duration.ZERO));
+        assertTrue(game.getAttemptedMoves().isEmpty());
+    }
+
+    @Test
+    void findForcedCheckmate_cancelled() {
+        Game game = fenService.getGame("2r1r1k1/5ppp/8/8/4R3/8/5PPP/4R1K1 w - - 15 38");
+        CancellationToken cancellationToken = CancellationToken.create();
+        cancellationToken.cancel();
+        assertEquals(Optional.empty(), analysisService.findForcedCheckmate(game, 3, cancellationToken));
+        assertTrue(game.getAttemptedMoves().isEmpty());
+    }
+
     @Test
     void findForcedCheckmateForQueenVsNothing() {
         Game game = fenService.getGame("4k3/Q7/8/4K3/8/8/8/8 w - - 0 1");
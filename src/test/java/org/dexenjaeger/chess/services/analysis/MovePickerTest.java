@@ -0,0 +1,114 @@
+package org.dexenjaeger.chess.services.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.board.Position;
+import org.dexenjaeger.chess.models.moves.EncodedMove;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.models.pieces.PieceType;
+import org.dexenjaeger.chess.services.FenService;
+import org.dexenjaeger.chess.services.GameService;
+import org.dexenjaeger.chess.services.LegalMoveService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class MovePickerTest {
+    private final ServiceProvider serviceProvider = new ServiceProvider();
+    private final LegalMoveService legalMoveService = serviceProvider.getInstance(LegalMoveService.class);
+    private final FenService fenService = serviceProvider.getInstance(FenService.class);
+    private final GameService gameService = serviceProvider.getInstance(GameService.class);
+
+    private Position position(String fen) {
+        return gameService.toPosition(fenService.getGame(fen));
+    }
+
+    private List<Integer> pickAll(MovePicker movePicker) {
+        List<Integer> result = new ArrayList<>();
+        for (int move = movePicker.next(); move != EncodedMove.NONE; move = movePicker.next()) {
+            result.add(move);
+        }
+        return result;
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1,false",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1,true",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1,false",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1,true",
+    })
+    void next_handsOutEveryLegalMoveOnce(String fen, boolean checksFirst) {
+        Position position = position(fen);
+        MovePicker movePicker = new MovePicker(legalMoveService, new MoveHistory(), checksFirst);
+        movePicker.reset(position, EncodedMove.NONE, 0);
+        List<Integer> moves = pickAll(movePicker);
+
+        List<Move> result = new ArrayList<>();
+        moves.forEach(move -> result.add(EncodedMove.toMove(move)));
+        assertEquals(moves.size(), new HashSet<>(moves).size());
+        assertEquals(legalMoveService.getLegalMoves(position), new HashSet<>(result));
+    }
+
+    @Test
+    void next_hashMoveThenCapturesByVictimThenKillers() {
+        // The pawn on c4 and the rook on e1 can both take; the queen is worth more than the rook.
+        Position position = position("4k3/8/8/3q4/2P1r3/8/8/4R1K1 w - - 0 1");
+        MoveHistory history = new MoveHistory();
+        int killer = EncodedMove.normal(6, 7, PieceType.KING, Side.WHITE);
+        history.addCutoff(killer, 0, 3);
+        int hashMove = EncodedMove.normal(4, 3, PieceType.ROOK, Side.WHITE);
+        MovePicker movePicker = new MovePicker(legalMoveService, history, false);
+        movePicker.reset(position, hashMove, 0);
+
+        List<Integer> moves = pickAll(movePicker);
+        assertEquals(hashMove, moves.get(0));
+        assertEquals(EncodedMove.normal(26, 35, PieceType.PAWN, Side.WHITE), moves.get(1));
+        assertEquals(EncodedMove.normal(4, 28, PieceType.ROOK, Side.WHITE), moves.get(2));
+        assertEquals(killer, moves.get(3));
+    }
+
+    @Test
+    void next_checksFirst() {
+        Position position = position("4k3/8/8/8/8/8/8/R3K3 w - - 0 1");
+        MovePicker movePicker = new MovePicker(legalMoveService, new MoveHistory(), true);
+        movePicker.reset(position, EncodedMove.NONE, 0);
+        List<Integer> moves = pickAll(movePicker);
+        // Ra8 is the only check.
+        assertEquals(EncodedMove.normal(0, 56, PieceType.ROOK, Side.WHITE), moves.get(0));
+        for (int move:moves.subList(1, moves.size())) {
+            assertFalse(legalMoveService.givesCheck(position, move));
+        }
+    }
+
+    @Test
+    void next_quiescenceChecksAfterCaptures() {
+        // Rxa4 is the only capture and Rd8 the only quiet check.
+        Position position = position("4k3/8/8/8/p7/8/8/R2RK3 w - - 0 1");
+        MovePicker movePicker = new MovePicker(legalMoveService, new MoveHistory(), false);
+        movePicker.resetQuiescence(position, 0, true);
+        assertEquals(
+            List.of(
+                EncodedMove.normal(0, 24, PieceType.ROOK, Side.WHITE),
+                EncodedMove.normal(3, 59, PieceType.ROOK, Side.WHITE)
+            ),
+            pickAll(movePicker)
+        );
+    }
+
+    @Test
+    void next_skipsIllegalHashMove() {
+        Position position = position("4k3/8/8/8/8/8/8/R3K3 w - - 0 1");
+        MovePicker movePicker = new MovePicker(legalMoveService, new MoveHistory(), false);
+        int illegal = EncodedMove.normal(0, 63, PieceType.ROOK, Side.WHITE);
+        movePicker.reset(position, illegal, 0);
+        assertFalse(pickAll(movePicker).contains(illegal));
+    }
+}
@@ -0,0 +1,119 @@
+package org.dexenjaeger.chess.services.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Optional;
+import org.dexenjaeger.chess.config.BindingConfig;
+import org.dexenjaeger.chess.config.BindingHolder;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.GameStatus;
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.analysis.CancellationToken;
+import org.dexenjaeger.chess.models.analysis.MateSolver;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.game.GameSnapshot;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.services.FenService;
+import org.dexenjaeger.chess.services.GameService;
+import org.dexenjaeger.chess.services.PgnService;
+import org.dexenjaeger.chess.utils.TreeNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class ProofNumberServiceTest {
+    private final ServiceProvider serviceProvider = new ServiceProvider(BindingHolder.init(
+        BindingConfig.builder()
+            .mateSolver(MateSolver.PROOF_NUMBER)
+            .build()
+    ));
+    private final AnalysisService analysisService = serviceProvider.getInstance(AnalysisService.class);
+    private final FenService fenService = serviceProvider.getInstance(FenService.class);
+    private final PgnService pgnService = serviceProvider.getInstance(PgnService.class);
+    private final GameService gameService = serviceProvider.getInstance(GameService.class);
+
+    private TreeNode<GameSnapshot> line(Game game, String solutionPgns) {
+        Game detachedGame = gameService.detachGameState(game);
+        for (String solutionPgn:solutionPgns.split(" ")) {
+            Move newMove = pgnService.fromPgnMove(solutionPgn, gameService.currentSide(detachedGame), detachedGame.getCurrentBoard());
+            gameService.applyMove(detachedGame, newMove);
+        }
+        return detachedGame.getGameNode().getFirstAncestor();
+    }
+
+    // The same puzzles as AnalysisServiceTest, which should give the same lines.
+    @ParameterizedTest
+    @CsvSource({
+        "3qk3/3ppp2/8/8/2B5/2K2Q2/8/8 w - - 15 38,Qf7,1",
+        "6rk/6pp/7P/6N1/6K1/8/8/8 w - - 15 38,Nf7,1",
+        "2r1r1k1/5ppp/8/8/4R3/8/5PPP/4R1K1 w - - 15 38,Re8 Rxe8 Rxe8,3",
+        "5r2/2R3b1/P4r2/2p2Nkp/2b3pN/6P1/4PP2/6K1 w - - 15 38,Rg7 Rg6 Rxg6,3",
+        "8/7k/p6p/4B1p1/3P1pQ1/7P/P5PK/5q2 w - - 15 38,Qf5 Kg8 Qg6 Kf8 Bd6,3",
+    })
+    void findForcedCheckmate(String fen, String solutionPgns, int maxTurns) {
+        Game game = fenService.getGame(fen);
+        assertEquals(
+            Optional.of(line(game, solutionPgns)),
+            analysisService.findForcedCheckmate(game, maxTurns)
+        );
+    }
+
+    @Test
+    void findForcedCheckmate_shortestMate() {
+        Game game = fenService.getGame("6rk/6pp/7P/6N1/6K1/8/8/8 w - - 15 38");
+        assertEquals(
+            Optional.of(line(game, "Nf7")),
+            analysisService.findForcedCheckmate(game, 3)
+        );
+    }
+
+    @Test
+    void findForcedCheckmate_fromTheMiddleOfAGame() {
+        // The line is added to the game and the whole game is returned, as with the exhaustive
+        // search.
+        String pgn = "1. e4 e5 2. Qh5 Nc6 3. Bc4 Nf6";
+        AnalysisService exhaustiveAnalysisService = new ServiceProvider().getInstance(AnalysisService.class);
+        Game game = pgnService.gameFromPgn(pgn);
+        TreeNode<GameSnapshot> result = analysisService.findForcedCheckmate(game, 1).orElseThrow();
+        assertEquals(
+            exhaustiveAnalysisService.findForcedCheckmate(pgnService.gameFromPgn(pgn), 1).orElseThrow(),
+            result
+        );
+        assertEquals(game.getGameNode(), result);
+        int plies = 0;
+        while (!result.getChildren().isEmpty()) {
+            result = result.getChildren().getFirst();
+            plies++;
+        }
+        assertEquals(7, plies);
+    }
+
+    @Test
+    void findForcedCheckmate_noMate() {
+        Game game = fenService.getGame("2r1r1k1/5ppp/8/8/4R3/8/5PPP/4R1K1 w - - 15 38");
+        // The mate takes two turns.
+        assertEquals(Optional.empty(), analysisService.findForcedCheckmate(game, 1));
+    }
+
+    @Test
+    void findForcedCheckmate_queenAgainstKing() {
+        Game game = fenService.getGame("4k3/Q7/8/4K3/8/8/8/8 w - - 0 1");
+        TreeNode<GameSnapshot> cursor = analysisService.findForcedCheckmate(game, 6).orElseThrow();
+        int whiteMoves = 0;
+        while (!cursor.getChildren().isEmpty()) {
+            cursor = cursor.getChildren().getFirst();
+            whiteMoves += cursor.getValue().getMove().getSide() == Side.WHITE ? 1 : 0;
+        }
+        assertEquals(GameStatus.WHITE_WON, gameService.getGameStatus(Game.init(cursor.getValue())));
+        // 1. Ke6 and the queen mates on d7 or f7.
+        assertEquals(2, whiteMoves);
+    }
+
+    @Test
+    void findForcedCheckmate_cancelled() {
+        Game game = fenService.getGame("2r1r1k1/5ppp/8/8/4R3/8/5PPP/4R1K1 w - - 15 38");
+        CancellationToken cancellationToken = CancellationToken.create();
+        cancellationToken.cancel();
+        assertEquals(Optional.empty(), analysisService.findForcedCheckmate(game, 3, cancellationToken));
+    }
+}
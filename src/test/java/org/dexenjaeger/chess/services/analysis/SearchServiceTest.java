@@ -0,0 +1,127 @@
+package org.dexenjaeger.chess.services.analysis;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.dexenjaeger.chess.config.BindingConfig;
+import org.dexenjaeger.chess.config.BindingHolder;
+import org.dexenjaeger.chess.config.ServiceProvider;
+import org.dexenjaeger.chess.models.analysis.SearchLimits;
+import org.dexenjaeger.chess.models.analysis.SearchMode;
+import org.dexenjaeger.chess.models.analysis.SearchResult;
+import org.dexenjaeger.chess.models.board.Position;
+import org.dexenjaeger.chess.models.game.Game;
+import org.dexenjaeger.chess.models.moves.Move;
+import org.dexenjaeger.chess.services.FenService;
+import org.dexenjaeger.chess.services.GameService;
+import org.dexenjaeger.chess.services.PgnService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class SearchServiceTest {
+    private final ServiceProvider serviceProvider = new ServiceProvider();
+    private final SearchService searchService = serviceProvider.getInstance(SearchService.class);
+    private final FenService fenService = serviceProvider.getInstance(FenService.class);
+    private final PgnService pgnService = serviceProvider.getInstance(PgnService.class);
+    private final GameService gameService = serviceProvider.getInstance(GameService.class);
+
+    private Move move(Game game, String pgnMove) {
+        return pgnService.fromPgnMove(pgnMove, gameService.currentSide(game), game.getCurrentBoard());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "6rk/6pp/7P/6N1/6K1/8/8/8 w - - 15 38,Nf7,1",
+        "2r1r1k1/5ppp/8/8/4R3/8/5PPP/4R1K1 w - - 15 38,Re8,3",
+        "r5k1/8/8/8/8/8/5PPP/6K1 b - - 0 1,Ra1,1",
+    })
+    void search_findsMate(String fen, String solutionPgn, int matePlies) {
+        Game game = fenService.getGame(fen);
+        SearchResult result = searchService.search(game, SearchLimits.builder().maxDepth(4).build());
+        assertEquals(Optional.of(move(game, solutionPgn)), result.getBestMove());
+        assertEquals(SearchService.MATE_SCORE - matePlies, result.getScore());
+        assertEquals(matePlies, result.getPrincipalVariation().size());
+    }
+
+    @Test
+    void search_winsMaterial() {
+        // The rook takes the undefended queen rather than the defended knight.
+        Game game = fenService.getGame("4k3/8/2n5/1q6/8/8/8/1R2K3 w - - 0 1");
+        SearchResult result = searchService.search(game, SearchLimits.builder().maxDepth(2).build());
+        assertEquals(Optional.of(move(game, "Rxb5")), result.getBestMove());
+        assertEquals(2, result.getDepth());
+        assertTrue(result.getScore() > 0);
+    }
+
+    @Test
+    void search_quiescenceAvoidsDefendedCapture() {
+        // At depth 1 Qxe5+ wins a pawn, until quiescence sees dxe5 win the queen.
+        Game game = fenService.getGame("4k3/8/3p4/4p3/8/8/8/4QK2 w - - 0 1");
+        SearchResult result = searchService.search(game, SearchLimits.builder().maxDepth(1).build());
+        assertNotEquals(Optional.of(move(game, "Qxe5")), result.getBestMove());
+        assertTrue(result.getQuiescenceNodes() > 0);
+        assertTrue(result.getQuiescenceNodes() <= result.getNodes());
+    }
+
+    @Test
+    void search_quiescenceChecks() {
+        // Kg8 is the only move, and Ra8 is a quiet mate, which is only seen when the quiescence
+        // search tries checks.
+        Game game = fenService.getGame("7k/6p1/6P1/8/8/8/8/R5K1 b - - 0 1");
+        SearchResult withoutChecks = searchService.search(game, SearchLimits.builder().maxDepth(1).build());
+        assertTrue(withoutChecks.getScore() > -SearchService.MATE_BOUND);
+        SearchResult withChecks = searchService.search(
+            game, SearchLimits.builder().maxDepth(1).quiescenceChecks(true).build()
+        );
+        assertEquals(-SearchService.MATE_SCORE + 2, withChecks.getScore());
+        assertEquals(Optional.of(move(game, "Kg8")), withChecks.getBestMove());
+    }
+
+    @Test
+    void search_stalemate() {
+        Game game = fenService.getGame("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1");
+        SearchResult result = searchService.search(game, SearchLimits.builder().maxDepth(3).build());
+        assertEquals(Optional.empty(), result.getBestMove());
+        assertEquals(0, result.getScore());
+    }
+
+    @Test
+    void search_stopsAtLimitsAfterFirstIteration() {
+        Position position = gameService.toPosition(gameService.startGame());
+        long key = position.getZobristKey();
+
+        SearchResult byNodes = searchService.search(position, SearchLimits.builder().maxNodes(1).build());
+        assertEquals(1, byNodes.getDepth());
+        assertTrue(byNodes.getBestMove().isPresent());
+
+        SearchResult byTime = searchService.search(position, SearchLimits.builder().maxTime(Duration.ZERO).build());
+        assertEquals(1, byTime.getDepth());
+
+        assertEquals(key, position.getZobristKey());
+        assertEquals(0, position.getPly());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "2r1r1k1/5ppp/8/8/4R3/8/5PPP/4R1K1 w - - 15 38,Re8,3",
+        "4k3/8/2n5/1q6/8/8/8/1R2K3 w - - 0 1,Rxb5,0",
+    })
+    void search_lazySmp(String fen, String solutionPgn, int matePlies) {
+        SearchService lazySmpService = new ServiceProvider(BindingHolder.init(
+            BindingConfig.builder()
+                .nThreads(4)
+                .searchMode(SearchMode.LAZY_SMP)
+                .build()
+        )).getInstance(SearchService.class);
+        Game game = fenService.getGame(fen);
+        SearchResult result = lazySmpService.search(game, SearchLimits.builder().maxDepth(4).build());
+        assertEquals(Optional.of(move(game, solutionPgn)), result.getBestMove());
+        if (matePlies > 0) {
+            assertEquals(SearchService.MATE_SCORE - matePlies, result.getScore());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.dexenjaeger.chess.services.moves;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.dexenjaeger.chess.models.Side;
+import org.dexenjaeger.chess.models.board.FileType;
+import org.dexenjaeger.chess.models.board.RankType;
+import org.dexenjaeger.chess.models.board.Square;
+import org.junit.jupiter.api.Test;
+
+class AttackTablesTest {
+    private static int index(FileType file, RankType rank) {
+        return new Square(file, rank).getIndex();
+    }
+
+    private static long bit(FileType file, RankType rank) {
+        return 1L << index(file, rank);
+    }
+
+    @Test
+    void bishopAttacks_doesNotIncludeFile() {
+        long attacks = AttackTables.bishopAttacks(index(FileType.E, RankType.THREE), 0);
+        assertEquals(0, attacks & bit(FileType.E, RankType.TWO), "Should not be able to move a bishop from e3 to e2.");
+        assertEquals(11, Long.bitCount(attacks));
+    }
+
+    @Test
+    void rookAttacks_stopsAtBlockers() {
+        long occupied = bit(FileType.D, RankType.SIX) | bit(FileType.B, RankType.FOUR) | bit(FileType.D, RankType.EIGHT);
+        long expected = bit(FileType.D, RankType.FIVE) | bit(FileType.D, RankType.SIX)
+            | bit(FileType.D, RankType.THREE) | bit(FileType.D, RankType.TWO) | bit(FileType.D, RankType.ONE)
+            | bit(FileType.C, RankType.FOUR) | bit(FileType.B, RankType.FOUR)
+            | bit(FileType.E, RankType.FOUR) | bit(FileType.F, RankType.FOUR)
+            | bit(FileType.G, RankType.FOUR) | bit(FileType.H, RankType.FOUR);
+        assertEquals(expected, AttackTables.rookAttacks(index(FileType.D, RankType.FOUR), occupied));
+    }
+
+    @Test
+    void slidingAttacks_matchEveryOccupancyOfAFullBoard() {
+        // With every square occupied each slider only reaches its neighbours.
+        for (int square = 0; square < 64; square++) {
+            assertEquals(AttackTables.kingAttacks(square), AttackTables.queenAttacks(square, -1L));
+        }
+    }
+
+    @Test
+    void stepAttacks_respectEdges() {
+        assertEquals(bit(FileType.B, RankType.THREE) | bit(FileType.C, RankType.TWO), AttackTables.knightAttacks(0));
+        assertEquals(3, Long.bitCount(AttackTables.kingAttacks(index(FileType.H, RankType.EIGHT))));
+        assertEquals(bit(FileType.B, RankType.THREE), AttackTables.pawnAttacks(Side.WHITE, index(FileType.A, RankType.TWO)));
+        assertEquals(
+            bit(FileType.D, RankType.SIX) | bit(FileType.F, RankType.SIX),
+            AttackTables.pawnAttacks(Side.BLACK, index(FileType.E, RankType.SEVEN))
+        );
+    }
+}